@@ -7,7 +7,6 @@ import java.util.List;
 import java.util.Map;
 import java.util.Set;
 
-import com.gingerdroids.crossword.Builder3Flesh.CellSet;
 import com.gingerdroids.utils_java.Str;
 
 public class BuildInfo { 
@@ -22,6 +21,26 @@ public class BuildInfo {
 
 	final StringList [] wordsByLength ; 
 	
+	/**
+	 * The distinct words, indexed by their id, shortest first. 
+	 * Grids keep which puzzle words are placed as a bitmask of ids (see {@link Grid#isWordPlaced(String)}), 
+	 * and their pending words are the unplaced ids, in id order. 
+	 * Within a length, the order is that of a hash set of the words, which is the order pending words have always been in, so builds are unchanged. 
+	 */
+	final String [] wordsById ; 
+	
+	private final Map<String,Integer> wordIds = new HashMap<String, Integer>(); 
+	
+	/**
+	 * How many longs a bitmask of word ids needs. 
+	 */
+	final int wordMaskLength ; 
+	
+	/**
+	 * {@link Grid#makeLetterMasks(String)} of each word, indexed by id. 
+	 */
+	private final long [][] letterMasksById ; 
+	
 	List<Cell> crossableCellList = new ArrayList<Cell>(); 
 	
 	Set<String> puzzleWords = new HashSet<String>() ;
@@ -37,8 +56,31 @@ public class BuildInfo {
 		this.wordsByLength = new StringList[longestWordLength+1] ;  
 		for (int i=1 ; i<=longestWordLength ; i++) wordsByLength[i] = new StringList(); 
 		for (String word : words) wordsByLength[word.length()].add(word); 
+		List<String> idOrder = new ArrayList<String>(); 
+		for (int i=1 ; i<=longestWordLength ; i++) idOrder.addAll(new HashSet<String>(wordsByLength[i])); 
+		this.wordsById = idOrder.toArray(new String[idOrder.size()]); 
+		for (int id=0 ; id<wordsById.length ; id++) wordIds.put(wordsById[id], id); 
+		this.wordMaskLength = (wordsById.length+63) / 64 ; 
+		this.letterMasksById = new long[wordsById.length][] ; 
+		for (int id=0 ; id<wordsById.length ; id++) letterMasksById[id] = Grid.makeLetterMasks(wordsById[id]); 
 	} 
 	
+	/**
+	 * The word's id, or -1 if it's not one of the puzzle words. 
+	 */
+	int getWordId(String word) { 
+		Integer id = wordIds.get(word); 
+		return (id!=null) ? id : -1 ; 
+	}
+	
+	/**
+	 * The word's {@link Grid#makeLetterMasks(String)}, made once for puzzle words. Not to be changed. 
+	 */
+	long [] getLetterMasks(String word) { 
+		int id = getWordId(word); 
+		return (id>=0) ? letterMasksById[id] : Grid.makeLetterMasks(word) ; 
+	}
+	
 	BuildInfo add(List<Cell> crossableCellList) { this.crossableCellList = crossableCellList ; return this ; } 
 	
 	BuildInfo add(Set<String> puzzleWords) { this.puzzleWords = puzzleWords ; return this ; } 
@@ -0,0 +1,176 @@
+package com.gingerdroids.crossword;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.PrintWriter;
+import java.util.Comparator;
+import java.util.Map;
+import java.util.SortedMap;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Counts and times what a build does, stage by stage, so you can see where the time goes without attaching a profiler. 
+ * <p>
+ * Each metric is a counter named by a path, like <code>flesh/12/placeabilityChecks</code>: 
+ * the stage, then (for fleshing) the word count of the grids made in that iteration, then what is counted. 
+ * Times are counters too, of nanoseconds, with names ending in <code>nanos</code>. 
+ * <p>
+ * Counters can be updated from any thread, without locking. In the hottest loops, counts are kept locally and added once per grid or word. 
+ * <p>
+ * Read the counters with {@link #getCount(String)} or {@link #getCounts()}, or all at once as JSON with {@link #toJson()}, nested by path. 
+ */
+public class BuildMetrics { 
+
+	private final ConcurrentHashMap<String, Counter> counters = new ConcurrentHashMap<String, Counter>(); 
+
+	/**
+	 * A thread-safe count. 
+	 */
+	public static class Counter { 
+		private final LongAdder adder = new LongAdder(); 
+		public void add(long amount) { 
+			adder.add(amount); 
+		}
+		public void increment() { 
+			adder.increment(); 
+		}
+		public long get() { 
+			return adder.sum(); 
+		}
+	}
+
+	/**
+	 * Returns the counter with the path, creating it if need be. Callers in loops should keep the counter, rather than look it up each time. 
+	 */
+	public Counter getCounter(String path) { 
+		Counter counter = counters.get(path); 
+		if (counter!=null) return counter ; 
+		Counter newCounter = new Counter(); 
+		Counter previous = counters.putIfAbsent(path, newCounter); 
+		return (previous!=null) ? previous : newCounter ; 
+	}
+
+	public void add(String path, long amount) { 
+		getCounter(path).add(amount); 
+	}
+
+	/**
+	 * Adds the nanoseconds since the start time (from {@link System#nanoTime()}) to the counter. 
+	 */
+	public void addNanosSince(String path, long startNanos) { 
+		add(path, System.nanoTime()-startNanos); 
+	}
+
+	/**
+	 * Zero if there is no such counter. 
+	 */
+	public long getCount(String path) { 
+		Counter counter = counters.get(path); 
+		return (counter!=null) ? counter.get() : 0 ; 
+	}
+
+	/**
+	 * Returns the current value of every counter, by path. 
+	 */
+	public SortedMap<String,Long> getCounts() { 
+		SortedMap<String,Long> counts = new TreeMap<String, Long>(); 
+		for (Map.Entry<String,Counter> entry : counters.entrySet()) counts.put(entry.getKey(), entry.getValue().get()); 
+		return counts ; 
+	}
+
+	//////  JSON
+
+	/**
+	 * Returns the counters as a JSON object, with an object for each level of the paths. 
+	 * Eg, <code>flesh/12/nanos</code> is at <code>{"flesh": {"12": {"nanos": ...}}}</code>. 
+	 * Word counts are in numeric order. 
+	 */
+	public String toJson() { 
+		TreeMap<String,Object> root = new TreeMap<String, Object>(pathPartOrder); 
+		for (Map.Entry<String,Long> entry : getCounts().entrySet()) { 
+			String [] parts = entry.getKey().split("/"); 
+			TreeMap<String,Object> node = root ; 
+			for (int i=0 ; i<parts.length-1 ; i++) { 
+				Object child = node.get(parts[i]); 
+				if (!(child instanceof TreeMap)) { 
+					TreeMap<String,Object> newNode = new TreeMap<String, Object>(pathPartOrder); 
+					if (child!=null) newNode.put("", child); // A count at a path which also has counts below it.
+					node.put(parts[i], newNode); 
+					child = newNode ; 
+				}
+				@SuppressWarnings("unchecked")
+				TreeMap<String,Object> childNode = (TreeMap<String,Object>) child ; 
+				node = childNode ; 
+			}
+			node.put(parts[parts.length-1], entry.getValue()); 
+		}
+		StringBuilder sb = new StringBuilder(); 
+		appendJson(sb, root, ""); 
+		sb.append('\n'); 
+		return sb.toString(); 
+	}
+
+	private static void appendJson(StringBuilder sb, Map<String,Object> node, String indent) { 
+		sb.append("{"); 
+		String childIndent = indent + "  " ; 
+		boolean isFirst = true ; 
+		for (Map.Entry<String,Object> entry : node.entrySet()) { 
+			if (!isFirst) sb.append(","); 
+			isFirst = false ; 
+			sb.append('\n').append(childIndent).append('"').append(escapeJson(entry.getKey())).append("\": "); 
+			Object value = entry.getValue(); 
+			if (value instanceof Map) { 
+				@SuppressWarnings("unchecked")
+				Map<String,Object> childNode = (Map<String,Object>) value ; 
+				appendJson(sb, childNode, childIndent); 
+			} else { 
+				sb.append(value); 
+			}
+		}
+		if (!isFirst) sb.append('\n').append(indent); 
+		sb.append("}"); 
+	}
+
+	private static String escapeJson(String str) { 
+		StringBuilder sb = new StringBuilder(); 
+		for (int i=0 ; i<str.length() ; i++) { 
+			char ch = str.charAt(i); 
+			if (ch=='"' || ch=='\\') sb.append('\\').append(ch); 
+			else if (ch<0x20) sb.append(String.format("\\u%04x", (int) ch)); 
+			else sb.append(ch); 
+		}
+		return sb.toString(); 
+	}
+
+	public void writeJson(File file) throws IOException { 
+		PrintWriter writer = new PrintWriter(file, "UTF-8"); 
+		try { 
+			writer.print(toJson()); 
+		} finally { 
+			writer.close(); 
+		}
+	}
+
+	/**
+	 * Numbers in numeric order, before other names, which are in alphabetical order. 
+	 */
+	private static final Comparator<String> pathPartOrder = new Comparator<String>() { 
+		@Override
+		public int compare(String a, String b) { 
+			boolean isANumber = isNumber(a); 
+			boolean isBNumber = isNumber(b); 
+			if (isANumber && isBNumber) return Long.compare(Long.parseLong(a), Long.parseLong(b)); 
+			if (isANumber!=isBNumber) return isANumber ? -1 : 1 ; 
+			return a.compareTo(b); 
+		}
+	}; 
+
+	private static boolean isNumber(String str) { 
+		if (str.isEmpty() || str.length()>18) return false ; 
+		for (int i=0 ; i<str.length() ; i++) if (!Character.isDigit(str.charAt(i))) return false ; 
+		return true ; 
+	}
+
+}
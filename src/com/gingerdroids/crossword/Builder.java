@@ -1,5 +1,6 @@
 package com.gingerdroids.crossword;
 
+import java.io.File;
 import java.io.IOException;
 import java.util.ArrayList;
 import java.util.Arrays;
@@ -38,6 +39,84 @@ public abstract class Builder {
 	
 	protected static final int candidateCountDuringCoat = 256 ;
 	
+	/**
+	 * How many threads are used for fleshing. The grids built don't depend on this. 
+	 * May be changed before building. 
+	 */
+	public static int threadCountDuringFlesh = Runtime.getRuntime().availableProcessors() ; 
+	
+	/**
+	 * How many threads are used for coating. The grids built don't depend on this. 
+	 * May be changed before building. 
+	 */
+	public static int threadCountDuringCoat = Runtime.getRuntime().availableProcessors() ; 
+	
+	/**
+	 * If more than one, grids are coated by beam search, keeping this many partly coated grids at each step, 
+	 * rather than greedily placing the first word which fits. 
+	 * May be changed before building. 
+	 */
+	static int beamWidthDuringCoat = 1 ; 
+	
+	/**
+	 * For beam coating, how many children are made from each grid in the beam. 
+	 */
+	static int candidatesPerGridDuringCoat = 4 ; 
+	
+	/**
+	 * For beam coating, how long may be spent on each grid. Zero or less means no limit. 
+	 */
+	static long millisPerGridDuringCoat = 2000 ; 
+	
+	/**
+	 * If not negative, fleshing only tries placements which cross an existing letter, 
+	 * plus at most this many placements crossing nothing, for each word. 
+	 * Negative (the default) tries every position. 
+	 * May be changed before building. 
+	 * <p>
+	 * (Nov20) On the example puzzles, 2 was faster and gave better final grids (more crossings). 
+	 * Zero can leave no grids at all, when a word has nowhere to cross. 
+	 */
+	static int nonCrossingPlacementsDuringFlesh = -1 ; 
+	
+	/**
+	 * If positive, how long {@link #buildGrids(int)} may spend fleshing, in milliseconds. 
+	 * Fleshing is then repeated with wider and wider beams until this time is up (or {@link #targetQualityDuringFlesh} is reached), 
+	 * keeping the best grids of all the attempts. 
+	 * Zero or less (the default) fleshes once, with {@link #candidateCountDuringFlesh} grids kept, however long that takes. 
+	 * May be changed before building. 
+	 * <p>
+	 * A couple of seconds gives a quick, usable crossword ; an hour or a night gives about the best this builder can do. 
+	 * Coating is not included in the time. 
+	 */
+	public static long millisDuringFlesh = 0 ; 
+	
+	/**
+	 * With {@link #millisDuringFlesh}, fleshing stops early once the best grid is at least this good, by {@link #qualityMeasure_final}. 
+	 * Infinity (the default) uses all the time ; minus infinity stops at the first complete grids. 
+	 * May be changed before building. 
+	 */
+	public static double targetQualityDuringFlesh = Double.POSITIVE_INFINITY ; 
+	
+	/**
+	 * With {@link #millisDuringFlesh}, the widest beam tried. Another attempt at the same width would build the same grids. 
+	 */
+	static int maxCandidateCountDuringFlesh = 32768 ; 
+	
+	/**
+	 * Folder where {@link #buildCrosswords()} keeps the grids it builds (see {@link ResultCache}), 
+	 * so building the same puzzle again with the same parameters reads them back instead. 
+	 * Null (the default) keeps nothing. 
+	 * May be changed before building. 
+	 */
+	public static File resultCacheDir = null ; 
+	
+	/**
+	 * The most the {@link #resultCacheDir} may hold before the least recently used entries are deleted. 
+	 * May be changed before building. 
+	 */
+	public static long resultCacheMaxBytes = 16 * 1024 * 1024 ; 
+	
 	protected final QualityMeasureFactory qualityMeasureFactory ; 
 	
 	/**
@@ -56,6 +135,13 @@ public abstract class Builder {
 	protected String[] clueWords;
 	protected final WordBank wordBank;
 
+	/**
+	 * Counts and times of what this builder has done, by stage (see {@link BuildMetrics}). 
+	 * Stages: <code>init</code>, <code>flesh</code> (and each of its iterations), <code>coat</code>, and <code>cache</code> for the {@link ResultCache}. 
+	 * <code>build/nanos</code> is the whole time in {@link #buildGrids(int, long, double)}. 
+	 */
+	public final BuildMetrics metrics = new BuildMetrics(); 
+
 	public Builder(CrosswordInput crosswordInput, WordBank wordBank, QualityMeasureFactory qualityMeasureFactory) {
 		this.crosswordInput = crosswordInput ; 
 		this.wordBank = wordBank ; 
@@ -70,7 +156,7 @@ public abstract class Builder {
 	}
 
 	private static Cell getCellForIndex(Grid grid, PlacedWord placedWord, int chIndex) {
-		return placedWord.isAcross ? grid.rows[placedWord.row][placedWord.column+chIndex] : grid.rows[placedWord.row+chIndex][placedWord.column];
+		return placedWord.isAcross ? grid.getCell(placedWord.row, placedWord.column+chIndex) : grid.getCell(placedWord.row+chIndex, placedWord.column);
 	}
 
 	/**
@@ -82,7 +168,7 @@ public abstract class Builder {
 	}
 
 	public Crossword[] buildCrosswords() throws IOException {
-		Grid [] grids = buildGrids(printCount);
+		Grid [] grids = buildGridsOrReadCache(printCount);
 		int gridCount = grids.length;
 		if (gridCount==0) throw new RuntimeException("Builder returned no grids."); 
 		Crossword [] crosswords = new Crossword[gridCount] ; 
@@ -90,7 +176,44 @@ public abstract class Builder {
 		return crosswords;
 	}
 
+	/**
+	 * Like {@link #buildGrids(int)}, but first looks in {@link #resultCacheDir} for grids built before with the same inputs and parameters, 
+	 * and stores the grids there if it has to build them. 
+	 */
+	private Grid[] buildGridsOrReadCache(int desiredGridCount) throws IOException { 
+		if (resultCacheDir==null) return buildGrids(desiredGridCount); 
+		ResultCache resultCache = new ResultCache(resultCacheDir, resultCacheMaxBytes); 
+		String key = ResultCache.describeKey(this, desiredGridCount); 
+		long startNanos = System.nanoTime(); 
+		Grid [] grids = resultCache.load(key, this); 
+		metrics.addNanosSince("cache/nanos", startNanos); 
+		if (grids!=null) { 
+			metrics.add("cache/hits", 1); 
+			printProgress("Read from result cache", grids.length>0 ? grids : null); 
+			return grids ; 
+		}
+		metrics.add("cache/misses", 1); 
+		grids = buildGrids(desiredGridCount); 
+		startNanos = System.nanoTime(); 
+		resultCache.store(key, grids); 
+		metrics.addNanosSince("cache/nanos", startNanos); 
+		return grids ; 
+	}
+
+	/**
+	 * Builds grids, fleshing them within {@link #millisDuringFlesh} (if set) and aiming at {@link #targetQualityDuringFlesh}. 
+	 */
 	public Grid[] buildGrids(int desiredGridCount) throws IOException {
+		return buildGrids(desiredGridCount, millisDuringFlesh, targetQualityDuringFlesh); 
+	}
+
+	/**
+	 * Builds grids. 
+	 * 
+	 * @param fleshMillis If positive, the time allowed for placing the puzzle words (see {@link #millisDuringFlesh}). 
+	 * @param targetQuality When to stop early, if there is a time allowed (see {@link #targetQualityDuringFlesh}). 
+	 */
+	public Grid[] buildGrids(int desiredGridCount, long fleshMillis, double targetQuality) throws IOException {
 		//////  Sanity check 
 		int sideLength = Math.max(rowCount, columnCount); 
 		for (String word : clueWords) { 
@@ -106,34 +229,87 @@ public abstract class Builder {
 		 * 
 		 * I've since replaced stage 1 with placing a single word in may places. Stage 2 is omitted. Stages 3&4 remain. 
 		 */
+		long buildStartNanos = System.nanoTime(); 
 		Grid [] currentGrids ; 
-		currentGrids = new Grid[]{new Grid(this)}; 
 		//////  Add puzzle words to grid
-		currentGrids = new Builder1Init(this, clueWords).build().getGrids(); 
-		currentGrids = new Builder3Flesh(candidateCountDuringFlesh).addFlesh(buildInfoAtStart, qualityMeasureFactory, currentGrids);
+		if (fleshMillis>0) { 
+			currentGrids = fleshWithinTime(desiredGridCount, fleshMillis, targetQuality); 
+		} else { 
+			currentGrids = buildInitGrids(); 
+			long startNanos = System.nanoTime(); 
+			currentGrids = new Builder3Flesh(candidateCountDuringFlesh, threadCountDuringFlesh, nonCrossingPlacementsDuringFlesh, Long.MAX_VALUE, metrics).addFlesh(buildInfoAtStart, qualityMeasureFactory, currentGrids);
+			currentGrids = SortedGridList.resort(currentGrids, qualityMeasure_final, desiredGridCount); 
+			metrics.addNanosSince("flesh/nanos", startNanos); 
+		}
 		//////  Administrivia, shifting from adding puzzle words to coating. 
-		currentGrids = SortedGridList.resort(currentGrids, qualityMeasure_final, desiredGridCount); 
 		Grid.notePuzzleWordsDone(currentGrids);
 		//////  Coat around outside of grids 
 		if (wordBank!=null) { 
-			Builder4Coat builderCoat = new Builder4Coat(wordBank); 
-			for (Grid grid : currentGrids) { 
-				builderCoat.buildCoat(grid);
-			}
+			long startNanos = System.nanoTime(); 
+			Builder4Coat builderCoat = new Builder4Coat(wordBank, threadCountDuringCoat, beamWidthDuringCoat, candidatesPerGridDuringCoat, millisPerGridDuringCoat, metrics); 
+			builderCoat.buildCoats(currentGrids); 
+			metrics.addNanosSince("coat/nanos", startNanos); 
 		} else { 
 			System.out.println(); 
 			System.out.println("There is no word bank to coat the puzzle words with words from a dictionary."); 
 		}
 		//////  Bye bye 
+		metrics.addNanosSince("build/nanos", buildStartNanos); 
 		return currentGrids ;
 	}
 
+	/**
+	 * The grids fleshing starts from, each with one word placed. 
+	 */
+	private Grid[] buildInitGrids() { 
+		long startNanos = System.nanoTime(); 
+		Grid [] grids = new Builder1Init(this, clueWords).build().getGrids(); 
+		metrics.addNanosSince("init/nanos", startNanos); 
+		metrics.add("init/grids", grids.length); 
+		return grids ; 
+	}
+
+	/**
+	 * Places the puzzle words again and again, doubling the beam width each time, until the time is up or the target quality is reached. 
+	 * Each attempt adapts its beam width to finish by the deadline, so there are always complete grids soon after it. 
+	 * 
+	 * @return The best grids of all the attempts, by {@link #qualityMeasure_final}. 
+	 */
+	private Grid[] fleshWithinTime(int desiredGridCount, long fleshMillis, double targetQuality) { 
+		long deadlineMillis = System.currentTimeMillis() + fleshMillis ; 
+		Grid [] bestGrids = new Grid[0] ; 
+		int beamWidth = candidateCountDuringFlesh ; 
+		while (true) { 
+			Grid [] grids = buildInitGrids(); // Fresh grids: fleshing leaves its children in them.
+			long startNanos = System.nanoTime(); 
+			grids = new Builder3Flesh(beamWidth, threadCountDuringFlesh, nonCrossingPlacementsDuringFlesh, deadlineMillis, metrics).addFlesh(buildInfoAtStart, qualityMeasureFactory, grids);
+			Grid [] allGrids = Arrays.copyOf(bestGrids, bestGrids.length+grids.length); 
+			System.arraycopy(grids, 0, allGrids, bestGrids.length, grids.length); 
+			bestGrids = SortedGridList.resort(allGrids, qualityMeasure_final, desiredGridCount); 
+			metrics.addNanosSince("flesh/nanos", startNanos); 
+			metrics.add("flesh/passes", 1); 
+			printProgress("Flesh width "+beamWidth, bestGrids.length>0 ? bestGrids : null); 
+			if (bestGrids.length>0 && bestGrids[0].getQuality()>=targetQuality) break ; 
+			if (System.currentTimeMillis()>=deadlineMillis) break ; 
+			if (beamWidth>=maxCandidateCountDuringFlesh) break ; 
+			beamWidth = Math.min(beamWidth*2, maxCandidateCountDuringFlesh); 
+		}
+		return bestGrids ; 
+	}
+
+	/**
+	 * Whether {@link #printProgress(String, Grid[])} prints anything. 
+	 * Cleared when several crosswords are built at once, whose progress would be interleaved. 
+	 */
+	public static boolean isPrintingProgress = true ; 
+
 	/**
 	 * Prints progress so far to the console. 
 	 * Currently (nov20) shows how many words in each grid, how many grids have been kept, 
 	 * and quality measures of various grids.  
 	 */
 	protected static void printProgress(String stage, Grid[] grids) { 
+		if (!isPrintingProgress) return ; 
 		System.out.print(stage); 
 		if (grids!=null) { 
 			if (grids.length==0) throw new RuntimeException("Zero grids in array."); 
@@ -205,7 +381,7 @@ public abstract class Builder {
 					PuzzleWord prevWord = i>0 ? puzzleWords_sorted[i-1] : null ; 
 					int wordNumber = puzzleWord.isSameCell(prevWord) ? prevWord.getWordNumber() : nextWordNumber++ ; 
 					puzzleWord.setWordNumber(wordNumber); 
-					grid.rows[puzzleWord.row][puzzleWord.column].wordNumber = wordNumber ; 
+					grid.setWordNumber(puzzleWord.row, puzzleWord.column, wordNumber); 
 					for (PuzzlePhrase phrase : puzzleWord.phrases) { 
 						phraseNumberer.noteUse(phrase); 
 					}
@@ -223,7 +399,7 @@ public abstract class Builder {
 					}
 				}); 
 			}
-			crossword = new Crossword(crosswordInput, grid, grid.placedWordList, puzzleWords_sorted, sortedPuzzlePhrases);
+			crossword = new Crossword(crosswordInput, grid, grid.placedWordList, puzzleWords_sorted, sortedPuzzlePhrases, metrics);
 			return crossword;
 		}
 
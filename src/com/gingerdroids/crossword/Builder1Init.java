@@ -69,6 +69,12 @@ public class Builder1Init {
 				gridList.add(grid); 
 			}
 		}
+		/*
+		 * A square grid's transpose is the same crossword, so the word is only placed down in grids which aren't square. 
+		 * Every later grid then has this word across, and its transpose (with the word down) is never built, 
+		 * so the beams need no check for transposed duplicates. 
+		 * Other reflections and rotations aren't the same crossword: they spell words backwards. 
+		 */
 		if (rowCount!=columnCount) { 
 			for (int row=0 ; row<=rowCount-wordLength ; row++) { 
 				for (int column=0 ; column<columnCount ; column++) { 
@@ -1,15 +1,15 @@
 package com.gingerdroids.crossword;
 
-import java.util.HashMap;
-import java.util.HashSet;
+import java.util.Arrays;
+import java.util.IdentityHashMap;
 import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+import java.util.concurrent.RecursiveAction;
 
 import com.gingerdroids.crossword.StandardBuilder;
 import com.gingerdroids.crossword.Grid;
-import com.gingerdroids.crossword.SortedGridList;
-import com.gingerdroids.utils_java.DynamicMultiThreader;
 import com.gingerdroids.utils_java.Str;
-import com.gingerdroids.utils_java.Util;
 
 public class Builder3Flesh { 
 	
@@ -20,48 +20,228 @@ public class Builder3Flesh {
 
 	private final int gridsKeptCount; 
 	
+	/**
+	 * How many threads expand the grids of each iteration. 
+	 * The result does not depend on this. 
+	 */
+	private final int threadCount ; 
+	
+	/**
+	 * If negative, every position in the grid is tried for each word. 
+	 * Otherwise, only placements crossing an existing letter are tried (see {@link CrossableCells}), 
+	 * plus at most this many placements crossing nothing, for each word. 
+	 */
+	private final int maxNonCrossingPlacements ; 
+	
+	/**
+	 * Time (as from {@link System#currentTimeMillis()}) by which fleshing should be finished, 
+	 * or {@link Long#MAX_VALUE} for no deadline. 
+	 * <p>
+	 * With a deadline, the number of grids expanded in each iteration (the beam width) is adapted to the time left, 
+	 * between {@link #minBeamWidth} and {@link #gridsKeptCount}. 
+	 * Past the deadline, the remaining iterations are done at the minimum width, 
+	 * so fleshing always finishes with complete grids, soon after the deadline. 
+	 */
+	private final long deadlineMillis ; 
+	
+	/**
+	 * The fewest grids expanded in an iteration, however late. 
+	 * Fewer risks every grid getting stuck with a word which won't fit. 
+	 */
+	private static final int minBeamWidth = 8 ; 
+	
+	/**
+	 * Where the counts and times of each iteration are recorded, under <code>flesh/</code> and the word count of the grids made. 
+	 */
+	private final BuildMetrics metrics ; 
+	
+	/**
+	 * The current iteration's counters, which {@link #addOneFleshWord(BuildInfo, ShardedGridCollector, Grid, String)} adds to once per word. 
+	 * Set before the iteration's grids are expanded. 
+	 */
+	private BuildMetrics.Counter placeabilityCheckCounter, qualityEvaluationCounter, placementsPrunedCounter, gridsGeneratedCounter ; 
+	
+	/**
+	 * Grids of earlier iterations, which the children of later iterations are copied into (see {@link #recycleGrids(Grid[], Grid[], IdentityHashMap, IdentityHashMap)}). 
+	 * One per call of {@link #addFlesh(BuildInfo, QualityMeasureFactory, Grid[])}. 
+	 */
+	private GridPool gridPool ; 
+	
 	public Builder3Flesh(int gridsKeptCount) { 
+		this(gridsKeptCount, Runtime.getRuntime().availableProcessors(), -1); 
+	}
+	
+	public Builder3Flesh(int gridsKeptCount, int threadCount, int maxNonCrossingPlacements) { 
+		this(gridsKeptCount, threadCount, maxNonCrossingPlacements, Long.MAX_VALUE); 
+	}
+	
+	public Builder3Flesh(int gridsKeptCount, int threadCount, int maxNonCrossingPlacements, long deadlineMillis) { 
+		this(gridsKeptCount, threadCount, maxNonCrossingPlacements, deadlineMillis, new BuildMetrics()); 
+	}
+	
+	public Builder3Flesh(int gridsKeptCount, int threadCount, int maxNonCrossingPlacements, long deadlineMillis, BuildMetrics metrics) { 
 		this.gridsKeptCount = gridsKeptCount ; 
+		this.threadCount = Math.max(threadCount, 1) ; 
+		this.maxNonCrossingPlacements = maxNonCrossingPlacements ; 
+		this.deadlineMillis = deadlineMillis ; 
+		this.metrics = metrics ; 
 	}
 	
 	public Grid [] addFlesh(BuildInfo buildInfo, QualityMeasureFactory qualityMeasureFactory, Grid[] inGrids) { 
 		int totalWordCount = buildInfo.words.length ; 
 		//////  Build the lists of grids. 
-		SortedGridList [] listsByWordCount = new SortedGridList[totalWordCount+1] ; // Grids with one word, two words, etc. 
+		ShardedGridCollector [] listsByWordCount = new ShardedGridCollector[totalWordCount+1] ; // Grids with one word, two words, etc. 
 		for (int currentWordCount=0 ; currentWordCount<=totalWordCount ; currentWordCount++) { 
 			QualityMeasure qualityMeasure = qualityMeasureFactory.makeQualityMeasure(totalWordCount, currentWordCount);  
-			listsByWordCount[currentWordCount] = new SortedGridList(qualityMeasure, gridsKeptCount); 
+			listsByWordCount[currentWordCount] = new ShardedGridCollector(qualityMeasure, gridsKeptCount); 
 		}
-		for (Grid grid : inGrids) { 
+		IdentityHashMap<Grid,Boolean> callersGrids = new IdentityHashMap<Grid, Boolean>(); // The caller may still want these, so they're never recycled. 
+		for (int i=0 ; i<inGrids.length ; i++) { 
+			Grid grid = inGrids[i] ; 
 			int gridWordCount = grid.placedWordList.size(); 
-			listsByWordCount[gridWordCount].addGrid(grid, false); 
+			listsByWordCount[gridWordCount].addGrid(grid, i); 
+			callersGrids.put(grid, Boolean.TRUE); 
 		}
+		this.gridPool = new GridPool(); 
+		IdentityHashMap<Grid,Boolean> keptGrids = new IdentityHashMap<Grid, Boolean>(); // Reused each iteration. 
 		//////  Build grids with more words 
 		/* Maintain diversity in the list of grids by only allowing two child-grids from each grid into the next iteration. */
 		Grid [] sortedResults = null ; 
-		for (int fromWordCount=0 ; fromWordCount<totalWordCount ; fromWordCount++) { 
-			SortedGridList fromList = listsByWordCount[fromWordCount] ; 
-			int toWordCount = fromWordCount+1;
-			SortedGridList toList = listsByWordCount[toWordCount] ; 
-			Grid[] fromGrids = fromList.getSortedGrids();
-			for (Grid fromGrid : fromGrids) { 
-				addOneFleshWord(buildInfo, toList.qualityMeasure, fromGrid); 
-			}
-			/* At this point, the new grids are in fields of their 'fromGrid'. */
-			for (Grid fromGrid : fromGrids) { 
-				if (fromGrid.next1!=null) toList.addGrid(fromGrid.next1, false); 
-				if (fromGrid.next2!=null) toList.addGrid(fromGrid.next2, false); 
+		int beamWidth = gridsKeptCount ; 
+		ForkJoinPool pool = (threadCount>1) ? new ForkJoinPool(threadCount) : null ; 
+		try { 
+			for (int fromWordCount=0 ; fromWordCount<totalWordCount ; fromWordCount++) { 
+				ShardedGridCollector fromList = listsByWordCount[fromWordCount] ; 
+				int toWordCount = fromWordCount+1;
+				ShardedGridCollector toList = listsByWordCount[toWordCount] ; 
+				Grid[] fromListGrids = fromList.getSortedGrids();
+				Grid[] fromGrids = fromListGrids ; 
+				if (fromGrids.length>beamWidth) fromGrids = Arrays.copyOf(fromGrids, beamWidth); 
+				long iterationStartNanos = System.nanoTime(); 
+				String metricsPath = "flesh/"+toWordCount+"/" ; 
+				placeabilityCheckCounter = metrics.getCounter(metricsPath+"placeabilityChecks"); 
+				qualityEvaluationCounter = metrics.getCounter(metricsPath+"qualityEvaluations"); 
+				placementsPrunedCounter = metrics.getCounter(metricsPath+"placementsPruned"); 
+				gridsGeneratedCounter = metrics.getCounter(metricsPath+"gridsGenerated"); 
+				if (pool!=null && fromGrids.length>1) { 
+					pool.invoke(new ExpandGridsTask(buildInfo, toList, fromGrids)); 
+				} else { 
+					for (int i=0 ; i<fromGrids.length ; i++) { 
+						expandGrid(buildInfo, toList, fromGrids[i], i); 
+					}
+				}
+				listsByWordCount[fromWordCount] = null ; 
+				int toListCount = toList.getCurrentCount();
+				sortedResults = toList.getSortedGrids();
+				if (toListCount>0) Builder.printProgress("Flesh", sortedResults);
+				metrics.add(metricsPath+"gridsExpanded", fromGrids.length); 
+				metrics.add(metricsPath+"gridsRejectedAsDuplicates", toList.getDuplicateCount()); 
+				metrics.add(metricsPath+"gridsRejectedByThreshold", toList.getRejectedCount()); 
+				metrics.add(metricsPath+"gridsKept", toListCount); 
+				metrics.add(metricsPath+"gridsReused", gridPool.takeReusedCount()); 
+				metrics.add(metricsPath+"gridsCreated", gridPool.takeCreatedCount()); 
+				if (toWordCount<totalWordCount) recycleGrids(fromListGrids, sortedResults, keptGrids, callersGrids); 
+				metrics.addNanosSince(metricsPath+"nanos", iterationStartNanos); 
+				if (deadlineMillis!=Long.MAX_VALUE && fromGrids.length>0) { 
+					double nanosPerGrid = (System.nanoTime()-iterationStartNanos) / (double) fromGrids.length ; 
+					beamWidth = adaptBeamWidth(nanosPerGrid, totalWordCount-toWordCount); 
+				}
 			}
-			listsByWordCount[fromWordCount] = null ; 
-			int toListCount = toList.getCurrentCount();
-			sortedResults = toList.getSortedGrids();
-			if (toListCount>0) Builder.printProgress("Flesh", sortedResults);
+		} finally { 
+			if (pool!=null) pool.shutdown(); 
+			this.gridPool = null ; 
 		}
 		//////  Bye bye
 		return sortedResults ; 
 	}
-
-	private static void addOneFleshWord(BuildInfo buildInfo, QualityMeasure qualityMeasure, Grid grid) {
+	
+	/**
+	 * Puts the grids which are finished with in the pool, once an iteration is done: 
+	 * the grids it expanded (and those it had no time to), and their children which the next list didn't keep. 
+	 * Grids the caller passed in are left alone. 
+	 * <p>
+	 * So the grids of one iteration become the children of the iteration after next. 
+	 * 
+	 * @param keptGrids Scratch map, cleared here. Unlike a hash set, it doesn't allocate as grids are put in it. 
+	 */
+	private void recycleGrids(Grid [] fromListGrids, Grid [] toListGrids, IdentityHashMap<Grid,Boolean> keptGrids, IdentityHashMap<Grid,Boolean> callersGrids) { 
+		keptGrids.clear(); 
+		for (Grid grid : toListGrids) keptGrids.put(grid, Boolean.TRUE); 
+		for (Grid grid : fromListGrids) { 
+			if (grid.next1!=null && !keptGrids.containsKey(grid.next1)) gridPool.recycle(grid.next1); 
+			if (grid.next2!=null && !keptGrids.containsKey(grid.next2)) gridPool.recycle(grid.next2); 
+			if (!callersGrids.containsKey(grid)) gridPool.recycle(grid); 
+		}
+		keptGrids.clear(); 
+	}
+	
+	/**
+	 * Chooses how many grids to expand in each of the remaining iterations, so they finish by the deadline. 
+	 * Assumes expanding a grid will take as long as it did in the iteration just done. 
+	 */
+	private int adaptBeamWidth(double nanosPerGrid, int remainingIterationCount) { 
+		if (remainingIterationCount<=0) return gridsKeptCount ; 
+		int minWidth = Math.min(minBeamWidth, gridsKeptCount); 
+		long remainingMillis = deadlineMillis - System.currentTimeMillis(); 
+		if (remainingMillis<=0) return minWidth ; 
+		double affordableWidth = remainingMillis * 1e6 / (Math.max(nanosPerGrid, 1) * remainingIterationCount) ; 
+		if (affordableWidth>=gridsKeptCount) return gridsKeptCount ; 
+		return Math.max((int) affordableWidth, minWidth); 
+	}
+	
+	/**
+	 * Adds a word to the grid in various ways, and offers the best two results to the list. 
+	 * <p>
+	 * The children are offered with sequence numbers from the grid's index, 
+	 * so the list's result is the same whatever order the grids are expanded in. 
+	 * 
+	 * @param gridIndex Index of the grid in the iteration's sorted grids. 
+	 */
+	private void expandGrid(BuildInfo buildInfo, ShardedGridCollector toList, Grid grid, int gridIndex) { 
+		addOneFleshWord(buildInfo, toList, grid); 
+		/* At this point, the new grids are in fields of the grid. */
+		if (grid.next1!=null) toList.addGrid(grid.next1, 2L*gridIndex); 
+		if (grid.next2!=null) toList.addGrid(grid.next2, 2L*gridIndex+1); 
+		gridsGeneratedCounter.add((grid.next1!=null ? 1 : 0) + (grid.next2!=null ? 1 : 0)); 
+	}
+	
+	/**
+	 * Expands each of the grids, one subtask per grid. 
+	 * <p>
+	 * Expanding a grid only changes that grid (its words are placed and unplaced, and its children recorded in it), 
+	 * so the subtasks don't share any data they change, except the list they offer children to. 
+	 */
+	@SuppressWarnings("serial")
+	private class ExpandGridsTask extends RecursiveAction { 
+		
+		private final BuildInfo buildInfo ; 
+		private final ShardedGridCollector toList ; 
+		private final Grid [] grids ; 
+		
+		ExpandGridsTask(BuildInfo buildInfo, ShardedGridCollector toList, Grid [] grids) { 
+			this.buildInfo = buildInfo ; 
+			this.toList = toList ; 
+			this.grids = grids ; 
+		}
+		
+		@Override
+		protected void compute() { 
+			RecursiveAction [] subtasks = new RecursiveAction[grids.length] ; 
+			for (int i=0 ; i<grids.length ; i++) { 
+				final Grid grid = grids[i] ; 
+				final int gridIndex = i ; 
+				subtasks[i] = new RecursiveAction() { 
+					@Override
+					protected void compute() { 
+						expandGrid(buildInfo, toList, grid, gridIndex); 
+					}
+				};
+			}
+			ForkJoinTask.invokeAll(subtasks); 
+		}
+	}
+	
+	private void addOneFleshWord(BuildInfo buildInfo, ShardedGridCollector toList, Grid grid) {
 		List<String> pendingWords = grid.getPendingWords(); 
 		int pendingWordCount = pendingWords.size(); 
 		int highestPendingIndex = pendingWordCount - 1 ; 
@@ -97,24 +277,15 @@ public class Builder3Flesh {
 			}
 		}
 		int liveCount = highestPendingIndex - lowestPendingIndex + 1 ; 
-		if (Util.ffalse) { 
-			/* With parallelization (not deterministic). Quick measurement on 4 processor machine: less than 2x speed-up. */
-			DynamicMultiThreader multiThreader = new DynamicMultiThreader(liveCount) {
-				@Override
-				protected void processItem(int itemNumber) {
-					int pendingIndex = highestPendingIndex - itemNumber ; 
-					String pendingWord = pendingWords.get(pendingIndex);
-					addOneFleshWord(buildInfo, qualityMeasure, grid, pendingWord); 
-				}
-			};
-			multiThreader.startAll(); 
-		} else { 
-			/* Single-threaded. Deterministic (at least this section is). */
-			for (int i=0 ; i<liveCount ; i++) { 
-				int pendingIndex = highestPendingIndex - i ; 
-				String pendingWord = pendingWords.get(pendingIndex);
-				addOneFleshWord(buildInfo, qualityMeasure, grid, pendingWord); 
-			}
+		/* 
+		 * Single-threaded, in a fixed order, so the children kept are deterministic. 
+		 * (Parallelization is across the grids being expanded, in addFlesh(). 
+		 * It used to be across these words, which wasn't deterministic and gave less than 2x speed-up on 4 processors.) 
+		 */
+		for (int i=0 ; i<liveCount ; i++) { 
+			int pendingIndex = highestPendingIndex - i ; 
+			String pendingWord = pendingWords.get(pendingIndex);
+			addOneFleshWord(buildInfo, toList, grid, pendingWord); 
 		}
 		/*
 		for (int pendingIndex=highestPendingIndex ; pendingIndex>=lowestPendingIndex ; pendingIndex--) { // Longest word first, not all words. 
@@ -124,41 +295,92 @@ public class Builder3Flesh {
 		 */
 	}
 
-	private static void addOneFleshWord(BuildInfo buildInfo, QualityMeasure qualityMeasure, Grid grid, String word) { 
+	/**
+	 * Tries the word at every position in the grid, keeping the best placements as the grid's children. 
+	 * <p>
+	 * Each placement is made in the grid itself, scored, and unplaced again. 
+	 * Only placements good enough to become {@link Grid#next1} or {@link Grid#next2}, and to be kept by the list, are copied. 
+	 * <p>
+	 * Before that, the quality the placement would have is bounded (see {@link QualityMeasure#boundQualityAfterPlacement(Grid, double, String, int, int, boolean)}). 
+	 * If even the bound is no better than the grid's {@link Grid#next2} so far (see {@link Grid#isChildWanted(double)}), the placement is not made. 
+	 * The bound is never below the quality, so the same children are chosen either way. 
+	 * <p>
+	 * If {@link #maxNonCrossingPlacements} is not negative, positions where the word would cross an existing letter are found from the grid's {@link CrossableCells}. 
+	 * Other positions are only tried until that many placements have been found there. 
+	 * The positions are visited in the same order either way. 
+	 * <p>
+	 * The positions are the slots of the word's length in the grid's {@link SlotTable}, across then down, 
+	 * so every position within the grid is tried, and none outside it. 
+	 */
+	private void addOneFleshWord(BuildInfo buildInfo, ShardedGridCollector toList, Grid grid, String word) { 
+		QualityMeasure qualityMeasure = toList.qualityMeasure ; 
+		double minQuality = toList.getQualityThreshold(); // Might rise meanwhile, on other threads. Doesn't matter. 
 		int rowCount = grid.rowCount ; 
 		int columnCount = grid.columnCount; 
 		int wordLength = word.length(); 
-		//////  Do each row 
-		for (int row=0 ; row<rowCount ; row++) { 
-			for (int column=0 ; column<=columnCount-wordLength ; column++) { 
-				if (grid.isWordPlaceable(word, row, column, true)) { 
-					Grid newGrid = grid.copy(); 
-					newGrid.placeWord(word, row, column, true); 
-					grid.addChild(newGrid, qualityMeasure);
-//					outList.addGrid(newGrid, false); 
-				}
-			}
+		long [] acrossStarts = null ; // Bit-sets of crossing placements, indexed by cell-index of first letter. 
+		long [] downStarts = null ; 
+		int nonCrossingBudget = Integer.MAX_VALUE ; 
+		int placeabilityCheckCount = 0 ; 
+		int placementCount = 0 ; 
+		int prunedCount = 0 ; 
+		double gridQuality = qualityMeasure.computeQuality(grid); // By the measure for the children, which isn't the grid's own. 
+		if (maxNonCrossingPlacements>=0) { 
+			CrossableCells crossableCells = grid.getCrossableCells(); 
+			int bitWordCount = (grid.getCellSlotCount()+63) / 64 ; 
+			acrossStarts = new long[bitWordCount] ; 
+			downStarts = new long[bitWordCount] ; 
+			crossableCells.markCrossingStarts(grid, word, true, acrossStarts); 
+			crossableCells.markCrossingStarts(grid, word, false, downStarts); 
+			nonCrossingBudget = maxNonCrossingPlacements ; 
 		}
-		//////  Do each column 
-		for (int column=0 ; column<=columnCount ; column++) { 
-			for (int row=0 ; row<rowCount-wordLength ; row++) { 
-				if (grid.isWordPlaceable(word, row, column, false)) { 
-					Grid newGrid = grid.copy(); 
-					newGrid.placeWord(word, row, column, false); 
-					grid.addChild(newGrid, qualityMeasure);
-//					outList.addGrid(newGrid, false); 
+		/* When every position is tried, each line's positions are checked together. Otherwise only a few are tried, so they're checked one at a time. */
+		boolean isCheckingLines = acrossStarts==null && Math.max(rowCount, columnCount)<=Grid.maxBatchedLineLength ; 
+		long [] letterMasks = isCheckingLines ? buildInfo.getLetterMasks(word) : null ; 
+		//////  Do each slot of the word's length, across then down 
+		SlotTable slotTable = grid.slotTable ; 
+		for (int direction=0 ; direction<2 ; direction++) { 
+			boolean isAcross = direction==0 ; 
+			long [] crossingStarts = isAcross ? acrossStarts : downStarts ; 
+			long placeableStarts = 0 ; 
+			int checkedLine = -1 ; // The line placeableStarts is for. 
+			for (int slot=slotTable.getFirstSlot(wordLength, isAcross), endSlot=slotTable.getEndSlot(wordLength, isAcross) ; slot<endSlot ; slot++) { 
+				boolean isCrossing = crossingStarts==null || isBitSet(crossingStarts, slotTable.startIndices[slot]) ; 
+				if (!isCrossing && nonCrossingBudget<=0) continue ; 
+				placeabilityCheckCount ++ ; 
+				boolean isPlaceable ; 
+				if (isCheckingLines) { 
+					int line = slotTable.lines[slot] ; 
+					if (line!=checkedLine) { 
+						placeableStarts = grid.getPlaceableStarts(word, letterMasks, line, isAcross); 
+						checkedLine = line ; 
+					}
+					isPlaceable = (placeableStarts>>>slotTable.lineStarts[slot]&1)!=0 ; 
+				} else { 
+					isPlaceable = grid.isWordPlaceable(word, slot); 
+				}
+				if (!isPlaceable) continue ; 
+				if (!isCrossing) nonCrossingBudget -- ; 
+				placementCount ++ ; 
+				int row = slotTable.rows[slot] ; 
+				int column = slotTable.columns[slot] ; 
+				double maxQuality = qualityMeasure.boundQualityAfterPlacement(grid, gridQuality, word, row, column, isAcross); 
+				if (!grid.isChildWanted(maxQuality)) { 
+					prunedCount ++ ; 
+					continue ; 
 				}
+				grid.placeWord(word, row, column, isAcross); 
+				grid.addPlacementAsChild(qualityMeasure, minQuality, gridPool);
+				grid.unplaceWord(); 
 			}
 		}
+		placeabilityCheckCounter.add(placeabilityCheckCount); 
+		qualityEvaluationCounter.add(placementCount-prunedCount); // Each placement not pruned is scored.
+		placementsPrunedCounter.add(prunedCount); 
 	}
 	
-	static class FreeCells { 
-		FreeCells(boolean wtf){}
-		HashMap<Character, CellSet> freeAcrossCellsByLetterX = new HashMap<Character,CellSet>(); // Locs in grid available for crossing-words
-		HashMap<Character, CellSet> freeDownCellsByLetterX = new HashMap<Character,CellSet>(); 
+	private static boolean isBitSet(long [] bits, int index) { 
+		return (bits[index>>>6] & (1L<<index)) != 0 ; 
 	}
-	
-	@SuppressWarnings("serial")
-	public static class CellSet extends HashSet<Cell> {}
 
 }
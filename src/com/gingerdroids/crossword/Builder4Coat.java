@@ -2,9 +2,12 @@ package com.gingerdroids.crossword;
 
 import java.util.HashSet;
 import java.util.Set;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+import java.util.concurrent.RecursiveAction;
 
 import com.gingerdroids.crossword.Grid.PlacedWord;
-import com.gingerdroids.crossword.WordBank.IndexedWord;
+import com.gingerdroids.crossword.WordBank.PatternMatches;
 
 public class Builder4Coat { 
 	
@@ -21,25 +24,130 @@ public class Builder4Coat {
 
 	private final WordBank wordBank;
 	
+	/**
+	 * How many threads {@link #buildCoats(Grid[])} uses. 
+	 * The grids built don't depend on this. 
+	 */
+	private final int threadCount ; 
+	
+	/**
+	 * How many partly coated grids beam coating keeps at each step (see {@link #buildCoatByBeam(Grid)}). 
+	 * One or less means greedy coating, by {@link #buildCoat(Grid)}. 
+	 */
+	private final int beamWidth ; 
+	
+	/**
+	 * How many children beam coating makes from each grid in the beam. 
+	 */
+	private final int candidatesPerGrid ; 
+	
+	/**
+	 * How long beam coating may spend on each grid. Zero or less means no limit. 
+	 */
+	private final long millisPerGrid ; 
+	
+	/**
+	 * Counts of what coating does, recorded under <code>coat/</code>. 
+	 */
+	private final BuildMetrics.Counter gridsCoatedCounter, placeabilityCheckCounter, wordBankQueryCounter, qualityEvaluationCounter, wordsPlacedCounter ; 
+	
 	public Builder4Coat(WordBank wordBank) {
+		this(wordBank, 1); 
+	}
+	
+	public Builder4Coat(WordBank wordBank, int threadCount) {
+		this(wordBank, threadCount, 1, 0, 0); 
+	}
+	
+	/**
+	 * @param beamWidth If more than one, grids are coated by beam search (see {@link #buildCoatByBeam(Grid)}) rather than greedily. 
+	 */
+	public Builder4Coat(WordBank wordBank, int threadCount, int beamWidth, int candidatesPerGrid, long millisPerGrid) {
+		this(wordBank, threadCount, beamWidth, candidatesPerGrid, millisPerGrid, new BuildMetrics()); 
+	}
+	
+	public Builder4Coat(WordBank wordBank, int threadCount, int beamWidth, int candidatesPerGrid, long millisPerGrid, BuildMetrics metrics) {
 		this.wordBank = wordBank ; 
+		this.threadCount = Math.max(threadCount, 1) ; 
+		this.beamWidth = beamWidth ; 
+		this.candidatesPerGrid = Math.max(candidatesPerGrid, 1) ; 
+		this.millisPerGrid = millisPerGrid ; 
+		this.gridsCoatedCounter = metrics.getCounter("coat/gridsCoated"); 
+		this.placeabilityCheckCounter = metrics.getCounter("coat/placeabilityChecks"); 
+		this.wordBankQueryCounter = metrics.getCounter("coat/wordBankQueries"); 
+		this.qualityEvaluationCounter = metrics.getCounter("coat/qualityEvaluations"); 
+		this.wordsPlacedCounter = metrics.getCounter("coat/wordsPlaced"); 
 	}
 	
+	/**
+	 * Coats the grids, and returns the best of them, best first. 
+	 */
 	public Grid [] buildCoat(Grid [] inGrids) { 
-		for (Grid inGrid : inGrids) { 
-			buildCoat(inGrid); 
-		}
+		buildCoats(inGrids); 
+		/* Sorted in the order of inGrids, so the ranking is the same however the grids were coated. */
 		SortedGridList coatedGrids = new SortedGridList(Builder.qualityMeasure_final, Builder.candidateCountDuringCoat); 
 		for (Grid grid : inGrids) coatedGrids.addGrid(grid, false); 
 		return coatedGrids.getSortedGrids(); 
 	}
 
+	/**
+	 * Fully coats each of the grids, like {@link #buildCoat(Grid)}, or by beam search if a beam width was given. 
+	 * Beam coating makes new grids, which replace the old ones in the array. 
+	 * <p>
+	 * The grids are coated concurrently, one subtask per grid. 
+	 * Coating a grid only changes that grid, and the word-bank is only read. 
+	 * Each grid's working state (its {@link NeedinessList}, the line patterns) is local to its subtask. 
+	 * Grids may share data with grids they were copied from (eg, the quality tally), but only read it. 
+	 */
+	public void buildCoats(final Grid [] grids) { 
+		if (threadCount==1 || grids.length<=1) { 
+			for (int i=0 ; i<grids.length ; i++) grids[i] = coat(grids[i]); 
+			return ; 
+		}
+		ForkJoinPool pool = new ForkJoinPool(threadCount); 
+		try { 
+			pool.invoke(new RecursiveAction() { 
+				@Override
+				protected void compute() { 
+					RecursiveAction [] subtasks = new RecursiveAction[grids.length] ; 
+					for (int i=0 ; i<grids.length ; i++) { 
+						final int gridIndex = i ; 
+						subtasks[i] = new RecursiveAction() { 
+							@Override
+							protected void compute() { 
+								grids[gridIndex] = coat(grids[gridIndex]); 
+							}
+						};
+					}
+					ForkJoinTask.invokeAll(subtasks); 
+				}
+			}); 
+		} finally { 
+			pool.shutdown(); 
+		}
+	}
+
+	/**
+	 * Coats the grid in whichever way this builder was configured for, and returns the coated grid. 
+	 */
+	private Grid coat(Grid grid) { 
+		gridsCoatedCounter.increment(); 
+		if (beamWidth<=1) { 
+			buildCoat(grid); 
+			return grid ; 
+		}
+		return buildCoatByBeam(grid); 
+	}
+
 	/**
 	 * Fully coats the given grid. 
 	 * The existing instance is modified (rather than creating a new instance). 
+	 * <p>
+	 * This is greedy: it places the first word from the word-bank which fits, and never reconsiders. 
 	 */
 	public void buildCoat(Grid grid) { 
 		int puzzleWordCount = grid.placedWordList.size(); 
+		grid.keepFreeRuns(); // Asked for at every letter of every target word. 
 		//////  Compute crossing-neediness of each puzzle word 
 		NeedinessList needinessList = new NeedinessList(Builder.qualityMeasure_final, grid); 
 		//////  Iteratively add coat-words 
@@ -63,6 +171,157 @@ public class Builder4Coat {
 		}
 	}
 
+	//////  Beam coating 
+	
+	/**
+	 * Coats a copy of the grid by beam search, and returns the best grid found. 
+	 * <p>
+	 * A beam of the best {@link #beamWidth} partly coated grids is kept, scored with {@link Builder#qualityMeasure_final}. 
+	 * Each step replaces every grid in the beam with its best {@link #candidatesPerGrid} children. 
+	 * A child has one more coat word, crossing the neediest puzzle word which can still be crossed. 
+	 * It stops when no grid in the beam has children, or the time budget runs out. 
+	 * The best grid seen at any step is returned ; if nothing could be added, that is the given grid, unchanged. 
+	 * <p>
+	 * Apart from the time budget, the result does not depend on timing. Of equally good candidates, the one earlier in the word-bank is preferred. 
+	 */
+	public Grid buildCoatByBeam(Grid grid) { 
+		long deadline = (millisPerGrid>0) ? System.currentTimeMillis()+millisPerGrid : Long.MAX_VALUE ; 
+		UsualQualityMeasure qualityMeasure = Builder.qualityMeasure_final ; 
+		grid.setQuality(qualityMeasure); 
+		grid.keepFreeRuns(); // Copied into the children. 
+		Grid bestGrid = grid ; 
+		Grid [] beam = new Grid[] {grid} ; 
+		while (beam.length>0 && System.currentTimeMillis()<deadline) { 
+			SortedGridList nextBeam = new SortedGridList(qualityMeasure, beamWidth); 
+			for (Grid beamGrid : beam) { 
+				for (Grid child : makeCoatChildren(beamGrid, deadline)) nextBeam.addGrid(child, false); // Each child is already a new grid. 
+			}
+			beam = nextBeam.getSortedGrids(); 
+			if (beam.length>0 && beam[0].getQuality()>bestGrid.getQuality()) bestGrid = beam[0] ; 
+		}
+		wordsPlacedCounter.add(bestGrid.placedWordList.size()-grid.placedWordList.size()); 
+		return bestGrid ; 
+	}
+	
+	/**
+	 * Returns copies of the grid, each with one more coat word, the best {@link #candidatesPerGrid} of them. 
+	 * Each has the quality its word was scored with while finding the candidates, so it isn't scored again. 
+	 * The coat words cross the neediest puzzle word which any coat word can cross. 
+	 * Returns an empty array if no coat word can be placed, or the deadline has passed. 
+	 */
+	private Grid [] makeCoatChildren(Grid grid, long deadline) { 
+		UsualQualityMeasure qualityMeasure = Builder.qualityMeasure_final ; 
+		NeedinessList needinessList = new NeedinessList(qualityMeasure, grid); 
+		CoatCandidates candidates = new CoatCandidates(candidatesPerGrid); 
+		while (needinessList.hasWordsRemaining() && candidates.count==0) { 
+			if (System.currentTimeMillis()>=deadline) break ; 
+			PlacedWord targetWord = needinessList.getNeediestWord(); 
+			if (targetWord.isPuzzleWord) findCoatCandidates(grid, targetWord, candidates); // The list has the coat words placed so far, too. 
+			needinessList.removeNeediestWord(); 
+		}
+		Grid [] children = new Grid[candidates.count] ; 
+		for (int i=0 ; i<candidates.count ; i++) { 
+			Grid child = grid.copy(); 
+			child.placeWord(candidates.words[i], candidates.rows[i], candidates.columns[i], candidates.isAcrosses[i]); 
+			child.setQuality(qualityMeasure, candidates.qualities[i]); 
+			children[i] = child ; 
+		}
+		return children ; 
+	}
+	
+	/**
+	 * Scores every coat word which could cross the target word, keeping the best in the candidates. 
+	 * Each is placed in the grid itself, scored, and unplaced again. 
+	 */
+	private void findCoatCandidates(Grid grid, PlacedWord placedWord, CoatCandidates candidates) { 
+		boolean isOldAcross = placedWord.isAcross;
+		boolean isNewAcross = !isOldAcross;
+		int row = placedWord.row ; 
+		int column = placedWord.column ; 
+		for (int i=0 ; i<placedWord.word.length() ; i++) { // For each letter in the existing word... 
+			if (isOldAcross) column = placedWord.column+i ; else row = placedWord.row+i ; 
+			if (isOldAcross && grid.isInDown(row, column)) continue ; 
+			if (!isOldAcross && grid.isInAcross(row, column)) continue ; 
+			int maxBefore ; 
+			int maxAfter ; 
+			if (isOldAcross) { 
+				maxBefore = grid.getFreeRunUpwards(row, column);
+				maxAfter = grid.getFreeRunDownwards(row, column);
+			} else { 
+				maxBefore = grid.getFreeRunLeftwards(row, column);
+				maxAfter = grid.getFreeRunRightwards(row, column);
+			}
+			int maxNewLength = maxBefore + maxAfter + 1 ; 
+			String line = getCoatLine(grid, isNewAcross, row, column, maxBefore, maxNewLength); 
+			int placeabilityCheckCount = 0 ; 
+			int qualityEvaluationCount = 0 ; 
+			for (int newLength=2 ; newLength<=maxNewLength ; newLength++) { 
+				PatternMatches matches = wordBank.findWords(line, newLength, maxBefore-newLength+1, maxBefore); 
+				for (int j=0 ; j<matches.size() ; j++) { 
+					String word = matches.getWord(j); 
+					if (grid.isWordPlaced(word)) continue ; 
+					int letterIndex = maxBefore - matches.getStart(j) ; 
+					int newRow = isNewAcross ? row : row-letterIndex ; 
+					int newColumn = isNewAcross ? column-letterIndex : column ; 
+					placeabilityCheckCount ++ ; 
+					if (!grid.isWordPlaceable(word, newRow, newColumn, isNewAcross)) continue ; 
+					grid.placeWord(word, newRow, newColumn, isNewAcross); 
+					double quality = Builder.qualityMeasure_final.computeQuality(grid); 
+					qualityEvaluationCount ++ ; 
+					grid.unplaceWord(); 
+					candidates.add(word, newRow, newColumn, isNewAcross, quality); 
+				}
+			}
+			wordBankQueryCounter.add(Math.max(maxNewLength-1, 0)); 
+			placeabilityCheckCounter.add(placeabilityCheckCount); 
+			qualityEvaluationCounter.add(qualityEvaluationCount); 
+		}
+	}
+	
+	/**
+	 * The best few coat words found so far, best first. 
+	 */
+	private static class CoatCandidates { 
+		final String [] words ; 
+		final int [] rows ; 
+		final int [] columns ; 
+		final boolean [] isAcrosses ; 
+		final double [] qualities ; 
+		int count = 0 ; 
+		CoatCandidates(int maxKept) { 
+			this.words = new String[maxKept] ; 
+			this.rows = new int[maxKept] ; 
+			this.columns = new int[maxKept] ; 
+			this.isAcrosses = new boolean[maxKept] ; 
+			this.qualities = new double[maxKept] ; 
+		}
+		/**
+		 * Keeps the candidate if it's among the best. Of equal qualities, the one added first is kept. 
+		 */
+		void add(String word, int row, int column, boolean isAcross, double quality) { 
+			int maxKept = words.length ; 
+			int index = count ; 
+			while (index>0 && qualities[index-1]<quality) index -- ; 
+			if (index>=maxKept) return ; 
+			int lastIndex = Math.min(count, maxKept-1); 
+			for (int i=lastIndex ; i>index ; i--) { 
+				words[i] = words[i-1] ; 
+				rows[i] = rows[i-1] ; 
+				columns[i] = columns[i-1] ; 
+				isAcrosses[i] = isAcrosses[i-1] ; 
+				qualities[i] = qualities[i-1] ; 
+			}
+			words[index] = word ; 
+			rows[index] = row ; 
+			columns[index] = column ; 
+			isAcrosses[index] = isAcross ; 
+			qualities[index] = quality ; 
+			if (count<maxKept) count ++ ; 
+		}
+	}
+	
+	//////  Greedy coating 
+
 	/**
 	 * Attempts to add a coat word crossing the target word. 
 	 * @param grid
@@ -81,96 +340,84 @@ public class Builder4Coat {
 		for (int i=0 ; i<oldWordLength ; i++) { // For each letter in the existing word... 
 			//////  Extract info about this letter in the existing word 
 			if (isOldAcross) column = startColumn+i ; else row = startRow+i ; 
-			Cell cell = grid.rows[row][column];
-			if (isOldAcross && cell.isInDown) continue ; 
-			if (!isOldAcross && cell.isInAcross) continue ; 
+			if (isOldAcross && grid.isInDown(row, column)) continue ; 
+			if (!isOldAcross && grid.isInAcross(row, column)) continue ; 
 			//////  Extract constraints on new word 
 			int maxBefore ; 
 			int maxAfter ; 
 			if (isOldAcross) { 
-				maxBefore = calculateCoatSpaceUpwards(grid, row, column);
-				maxAfter = calculateCoatSpaceDownwards(grid, row, column);
+				maxBefore = grid.getFreeRunUpwards(row, column);
+				maxAfter = grid.getFreeRunDownwards(row, column);
 			} else { 
-				maxBefore = calculateCoatSpaceLeftwards(grid, row, column);
-				maxAfter = calculateCoatSpaceRightwards(grid, row, column);
+				maxBefore = grid.getFreeRunLeftwards(row, column);
+				maxAfter = grid.getFreeRunRightwards(row, column);
 			}
 			int maxNewLength = maxBefore + maxAfter + 1 ; 
+			String line = getCoatLine(grid, isNewAcross, row, column, maxBefore, maxNewLength); 
 			//////  Look for a word from the word-bank which fits. 
 			boolean isAdded = false ; 
 			for (int tryNewLength=optimalCoatWordLength ; tryNewLength<=maxNewLength && !isAdded ; tryNewLength++) { 
-				isAdded = addCoatWord(grid, isNewAcross, row, column, cell, maxBefore, maxAfter, isAdded, tryNewLength);
+				isAdded = addCoatWord(grid, isNewAcross, row, column, line, maxBefore, tryNewLength);
 			}
 			for (int tryNewLength=optimalCoatWordLength-1 ; tryNewLength>=2 && !isAdded ; tryNewLength--) { 
-				isAdded = addCoatWord(grid, isNewAcross, row, column, cell, maxBefore, maxAfter, isAdded, tryNewLength);
+				isAdded = addCoatWord(grid, isNewAcross, row, column, line, maxBefore, tryNewLength);
 			}
 			if (isAdded) return true ; 
 		}
 		return false ; 
 	}
 
-	public boolean addCoatWord(Grid grid, boolean isNewAcross, int row, int column, Cell cell, int maxBefore, int maxAfter, boolean isAdded, int tryNewLength) {
-		IndexedWord[] indexedWords = wordBank.getWords(cell.ch, tryNewLength); // Fetch words containing this letter, with the desired length. 
-		for (IndexedWord indexedWord : indexedWords) { // For each candidate-word of this length... 
-			if (grid.placedWordSet.contains(indexedWord.word)) continue ; 
-			int letterIndex = indexedWord.index ; 
-			int lettersBefore = letterIndex ; 
-			int lettersAfter = tryNewLength - letterIndex - 1 ; 
-			if (lettersBefore<=maxBefore && lettersAfter<=maxAfter) { 
-				/* Here we know: There is space for the word. But does it clash with existing letters in the grid? */
+	/**
+	 * Attempts to add a coat word of the given length, through the given cell. 
+	 * 
+	 * @param line The cells a coat word through the given cell could cover, as a pattern for {@link WordBank#findWords(CharSequence, int, int, int)}. 
+	 * @param lineIndex Index in the line of the given cell. 
+	 */
+	public boolean addCoatWord(Grid grid, boolean isNewAcross, int row, int column, String line, int lineIndex, int tryNewLength) {
+		PatternMatches matches = wordBank.findWords(line, tryNewLength, lineIndex-tryNewLength+1, lineIndex); // Words fitting the letters already in the line. 
+		wordBankQueryCounter.increment(); 
+		int placeabilityCheckCount = 0 ; 
+		try { 
+			for (int i=0 ; i<matches.size() ; i++) { // For each candidate-word of this length... 
+				String word = matches.getWord(i); 
+				if (grid.isWordPlaced(word)) continue ; 
+				int letterIndex = lineIndex - matches.getStart(i) ; 
+				/* Here we know: There is space for the word, and it matches the letters in the line. But does it clash with anything else in the grid? */
 				int newRow = row ; 
 				int newColumn = column ; 
 				if (isNewAcross) newColumn -= letterIndex ; else newRow -= letterIndex ; 
-				if (grid.isWordPlaceable(indexedWord.word, newRow, newColumn, isNewAcross)) { 
+				placeabilityCheckCount ++ ; 
+				if (grid.isWordPlaceable(word, newRow, newColumn, isNewAcross)) { 
 					/* Here we know: This candidate word can be placed in the grid. */
-					grid.placeWord(indexedWord.word, newRow, newColumn, isNewAcross); 
-					isAdded = true ; 
-					break ; 
+					grid.placeWord(word, newRow, newColumn, isNewAcross); 
+					wordsPlacedCounter.increment(); 
+					return true ; 
 				}
 			}
-			if (isAdded) break ; 
+			return false ; 
+		} finally { 
+			placeabilityCheckCounter.add(placeabilityCheckCount); 
 		}
-		return isAdded;
 	}
-	
-//	private void breakME() {
-//		// TODO Auto-generated method stub
-//		
-//	}
 
 	/**
-	 * Compute how many cells to the right of the given cell can be covered by an across-word. 
-	 */
-	private int calculateCoatSpaceRightwards(Grid grid, int row, int startColumn) { 
-		int column = startColumn + 1 ; 
-		while (column<grid.columnCount && !grid.rows[row][column].isInAcross) column ++ ; 
-		return column - startColumn - 1 ; 
-	}
-	
-	/**
-	 * Compute how many cells to the left of the given cell can be covered by an across-word. 
+	 * Returns the letters of a line of cells through the given cell, with {@link WordBank#wildcard} for empty cells. 
+	 * 
+	 * @param cellsBefore How many cells of the line are before the given cell. 
 	 */
-	private int calculateCoatSpaceLeftwards(Grid grid, int row, int startColumn) { 
-		int column = startColumn - 1 ; 
-		while (column>=0 && !grid.rows[row][column].isInAcross) column -- ; 
-		return startColumn - column - 1 ; 
-	}
-	
-	/**
-	 * Compute how many cells below the given cell can be covered by a down-word. 
-	 */
-	private int calculateCoatSpaceDownwards(Grid grid, int startRow, int column) { 
-		int row = startRow + 1 ; 
-		while (row<grid.rowCount && !grid.rows[row][column].isInDown) row ++ ; 
-		return row - startRow - 1 ; 
+	private String getCoatLine(Grid grid, boolean isAcross, int row, int column, int cellsBefore, int lineLength) { 
+		char [] line = new char[lineLength] ; 
+		for (int i=0 ; i<lineLength ; i++) { 
+			int offset = i - cellsBefore ; 
+			char ch = isAcross ? grid.getChar(row, column+offset) : grid.getChar(row+offset, column) ; 
+			line[i] = (ch==Cell.space) ? WordBank.wildcard : ch ; 
+		}
+		return new String(line); 
 	}
 	
-	/**
-	 * Compute how many cells above the given cell can be covered by a down-word. 
-	 */
-	private int calculateCoatSpaceUpwards(Grid grid, int startRow, int column) { 
-		int row = startRow - 1 ; 
-		while (row>=0 && !grid.rows[row][column].isInDown) row -- ; 
-		return startRow - row - 1 ; 
-	}
+//	private void breakME() {
+//		// TODO Auto-generated method stub
+//		
+//	}
 
 }
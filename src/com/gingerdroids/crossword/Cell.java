@@ -2,69 +2,70 @@ package com.gingerdroids.crossword;
 
 /**
  * Single cell within a grid. 
+ * <p>
+ * This is a view onto the {@link Grid}, which holds the cell contents itself. 
+ * Instances are cheap, and are not copied when the grid is copied. 
  */
 public class Cell { 
-	
+
 	public static final char space = ' ' ; 
-	
+
+	private final Grid grid ; 
+
 	final int row ; 
 	final int column ; 
-	
-	public char ch = space ; // Ideally should be private, but very frequently accessed. 
-	
+
+	Cell(Grid grid, int row, int column) { 
+		this.grid = grid ; 
+		this.row = row ; 
+		this.column = column ; 
+	}
+
+	public char getChar() { 
+		return grid.getChar(row, column); 
+	}
+
 	/**
 	 * The clue-number associated with this cell. 
 	 * <p>
-	 * Most cells don't have a number - this field has value zero for them. 
+	 * Most cells don't have a number - this has value zero for them. 
 	 */
-	public int wordNumber = 0 ; // Flag value. First proper word-number is 1. 
-	
-	public boolean isInAcross = false ; 
-	
-	public boolean isInDown = false ; 
-	
-	public boolean isPuzzleCell = false ; 
-	
-	public void reset() { 
-		this.ch = space ; 
-		this.wordNumber = 0 ; 
-		this.isInAcross = false ; 
-		this.isInDown = false ; 
-		this.isPuzzleCell = false ; 
+	public int getWordNumber() { 
+		return grid.getWordNumber(row, column); 
 	}
-	
-	Cell(int row, int column) { 
-		this.row = row ; 
-		this.column = column ; 
-		reset(); 
+
+	public boolean isInAcross() { 
+		return grid.isInAcross(row, column); 
+	}
+
+	public boolean isInDown() { 
+		return grid.isInDown(row, column); 
 	}
-	
-	Cell(Cell old) { 
-		this.row = old.row ; 
-		this.column = old.column ; 
-		this.ch = old.ch ; 
-		this.isInAcross = old.isInAcross ; 
-		this.isInDown = old.isInDown ; 
+
+	public boolean isPuzzleCell() { 
+		return grid.isPuzzleCell(row, column); 
 	}
-	
-	void setChar(char ch, boolean isAcross) { 
-		if (this.ch!=space && this.ch!=ch) throw new RuntimeException("Cell already has letter '"+this.ch+"', cannot insert '"+ch+"'"); 
-		if (isAcross) { 
-			if (isInAcross) throw new RuntimeException("Already have an across letter."); 
-			this.isInAcross = true ; 
-		} else { 
-			if (isInDown) throw new RuntimeException("Already have a down letter."); 
-			this.isInDown = true ; 
-		}
-		this.ch = ch ; 
-	} 
-	
+
 	public boolean isCrossingCell() { 
-		return isInAcross && isInDown ; 
+		return grid.isCrossingCell(row, column); 
+	}
+
+	public boolean hasLetter() { 
+		return grid.hasLetter(row, column); 
+	}
+
+	/* Views of the same position are interchangeable, eg as keys in a set. */
+
+	@Override
+	public boolean equals(Object other) { 
+		if (!(other instanceof Cell)) return false ; 
+		Cell otherCell = (Cell) other ; 
+		return otherCell.grid==grid && otherCell.row==row && otherCell.column==column ; 
 	}
 
-	public boolean hasLetter() {
-		return ch!=space ;
+	@Override
+	public int hashCode() { 
+		return row * 31 + column ; 
 	}
 
 }
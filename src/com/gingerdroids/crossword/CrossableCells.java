@@ -0,0 +1,97 @@
+package com.gingerdroids.crossword;
+
+/**
+ * Index of the cells in a grid which a new word could cross, grouped by letter. 
+ * A cell can be crossed by a down-word if it is in an across-word only, and vice versa. 
+ * <p>
+ * Used in the fleshing stage to propose only placements which cross an existing letter. 
+ * It is computed from the grid when needed, and not changed afterwards, so copies of a grid can share it. 
+ *
+ * @see Grid#getCrossableCells() 
+ */
+class CrossableCells { 
+
+	private static final int maxChar = 128 ; // Letters are simple ASCII.
+
+	/**
+	 * Cell-indices of cells in an across-word only, sorted by letter. 
+	 * Those with letter 'ch' are from index downCrossableStarts[ch] (inclusive) to downCrossableStarts[ch+1] (exclusive). 
+	 */
+	private final int [] downCrossable ; 
+	private final int [] downCrossableStarts ; 
+
+	/**
+	 * Cell-indices of cells in a down-word only, sorted by letter. Laid out like {@link #downCrossable}. 
+	 */
+	private final int [] acrossCrossable ; 
+	private final int [] acrossCrossableStarts ; 
+
+	CrossableCells(Grid grid) { 
+		this.downCrossableStarts = new int[maxChar+1] ; 
+		this.downCrossable = collect(grid, Grid.IN_ACROSS, downCrossableStarts); 
+		this.acrossCrossableStarts = new int[maxChar+1] ; 
+		this.acrossCrossable = collect(grid, Grid.IN_DOWN, acrossCrossableStarts); 
+	}
+
+	/**
+	 * Counting sort, by letter, of the cells whose direction flags are exactly 'directionFlag'. 
+	 */
+	private static int [] collect(Grid grid, int directionFlag, int [] starts) { 
+		final int directionMask = Grid.IN_ACROSS|Grid.IN_DOWN ; 
+		int [] counts = new int[maxChar] ; 
+		int total = 0 ; 
+		for (int i=0 ; i<grid.rowCount ; i++) { 
+			for (int j=0 ; j<grid.columnCount ; j++) { 
+				int index = grid.cellIndex(i, j); 
+				if ((grid.getFlagsAt(index)&directionMask)==directionFlag) { 
+					counts[grid.getCharAt(index)] ++ ; 
+					total ++ ; 
+				}
+			}
+		}
+		for (int ch=0 ; ch<maxChar ; ch++) starts[ch+1] = starts[ch] + counts[ch] ; 
+		int [] cellIndices = new int[total] ; 
+		int [] next = new int[maxChar] ; 
+		System.arraycopy(starts, 0, next, 0, maxChar); 
+		for (int i=0 ; i<grid.rowCount ; i++) { 
+			for (int j=0 ; j<grid.columnCount ; j++) { 
+				int index = grid.cellIndex(i, j); 
+				if ((grid.getFlagsAt(index)&directionMask)==directionFlag) { 
+					cellIndices[next[grid.getCharAt(index)]++] = index ; 
+				}
+			}
+		}
+		return cellIndices ; 
+	}
+
+	/**
+	 * Marks, in the bit-set, the start cell of every placement of the word which would cross an existing letter. 
+	 * The placements are not checked ; they might still clash, or run off the grid. 
+	 *
+	 * @param startBits Bit-set indexed by cell-index of the first letter. 
+	 * @return The number of anchoring cells found, counting a placement once for each letter it crosses. 
+	 */
+	int markCrossingStarts(Grid grid, String word, boolean isAcross, long [] startBits) { 
+		int [] cellIndices = isAcross ? acrossCrossable : downCrossable ; 
+		int [] starts = isAcross ? acrossCrossableStarts : downCrossableStarts ; 
+		int step = isAcross ? 1 : grid.stride ; 
+		int anchorCount = 0 ; 
+		for (int x=0 ; x<word.length() ; x++) { 
+			char ch = word.charAt(x); 
+			if (ch>=maxChar) continue ; 
+			for (int k=starts[ch] ; k<starts[ch+1] ; k++) { 
+				int cellIndex = cellIndices[k] ; 
+				if (isAcross) { 
+					if (cellIndex%grid.stride<x) continue ; // Would start left of the grid.
+				} else { 
+					if (cellIndex<x*step) continue ; // Would start above the grid.
+				}
+				int startIndex = cellIndex - x*step ; // Running off the right or bottom is rejected by Grid.isWordPlaceable().
+				startBits[startIndex>>>6] |= 1L << startIndex ; 
+				anchorCount ++ ; 
+			}
+		}
+		return anchorCount ; 
+	}
+
+}
@@ -16,12 +16,23 @@ public class Crossword {
 	
 	public final CrosswordInput crosswordInput ; 
 	
+	/**
+	 * Counts and times of the build which made this crossword, or null if not known. 
+	 * Crosswords from the same build share it. 
+	 */
+	public final BuildMetrics buildMetrics ; 
+	
 	public Crossword(CrosswordInput crosswordInput, Grid grid, List<PlacedWord> placedWordList, PuzzleWord [] words, PuzzlePhrase [] phrases) {
+		this(crosswordInput, grid, placedWordList, words, phrases, null); 
+	}
+	
+	public Crossword(CrosswordInput crosswordInput, Grid grid, List<PlacedWord> placedWordList, PuzzleWord [] words, PuzzlePhrase [] phrases, BuildMetrics buildMetrics) {
 		this.grid = grid ; 
 		this.puzzleWords = words ; 
 		this.puzzlePhrases = phrases ; 
 		this.placedWordList = placedWordList ; 
 		this.crosswordInput = crosswordInput ; 
+		this.buildMetrics = buildMetrics ; 
 	}
 
 }
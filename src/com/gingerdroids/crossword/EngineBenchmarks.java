@@ -0,0 +1,405 @@
+package com.gingerdroids.crossword;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.PrintWriter;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Random;
+import java.util.Set;
+
+import com.gingerdroids.crossword.Grid.PlacedWord;
+import com.gingerdroids.utils_java.MicroBenchmark;
+import com.gingerdroids.utils_java.Util;
+
+/**
+ * Micro-benchmarks of the engine's hot paths: copying grids, checking and placing words, signatures, quality measures,
+ * the sorted lists of grids, and the word-bank's queries and loading. 
+ * <p>
+ * Usage: <code>EngineBenchmarks [-quick] [-filter TEXT] [CLUES-FILE]</code>
+ * <p>
+ * The grids are built from a clues-file (by default <code>Examples/clueful 10x10.txt</code>),
+ * and the word-bank is a synthetic dictionary made up here, so it needs nothing downloaded. 
+ * Only benchmarks whose names contain the filter text are run. <code>-quick</code> runs fewer, shorter iterations, for a rough idea. 
+ * <p>
+ * Please run this before and after a change meant to speed things up, and quote the numbers with the change. 
+ *
+ * @see MicroBenchmark
+ */
+public class EngineBenchmarks { 
+
+	/**
+	 * The same parameters as the clueful app's quality measures. 
+	 */
+	private static final QualityMeasureFactory qualityMeasureFactory = new QualityMeasureFactory() { 
+		public QualityMeasure makeQualityMeasure(int totalWordCount, int currentWordCount) { 
+			double currentWordFraction = currentWordCount / (double) totalWordCount; 
+			double lengthsFactor = currentWordCount ; 
+			double pendingFactor = 100 ; 
+			double crossingsFactor = 8 + currentWordCount / 4.0 ; 
+			double fullSpanFactor = currentWordFraction * (1-currentWordFraction); 
+			double symSpanFactor = 2 * (1 - currentWordFraction) ; 
+			double needinessFactor = 1 + 2 * Util.sqr(currentWordFraction) ; 
+			return new UsualQualityMeasure(lengthsFactor, pendingFactor, crossingsFactor, fullSpanFactor, symSpanFactor, 0, false, needinessFactor, 1, null); 
+		}
+	}; 
+
+	/**
+	 * Letters of the synthetic dictionary, about as common as in English. 
+	 */
+	private static final String letterPool = "EEEEEEEEEEEETTTTTTTTTAAAAAAAAOOOOOOOIIIIIIINNNNNNNSSSSSSHHHHHHRRRRRRDDDDLLLLCCCUUUMMMWWFFGGYYPPBBVKJXQZ" ; 
+
+	private static final int syntheticWordCount = 60000 ; 
+
+	private final MicroBenchmark microBenchmark ; 
+
+	private final String filter ; 
+
+	//////  Fixtures
+
+	private final File tmpDir ; 
+
+	private final WordBank wordBank ; 
+
+	private final Builder builder ; 
+
+	/**
+	 * A grid with about half the puzzle words placed, as in the middle of fleshing. 
+	 */
+	private final Grid halfGrid ; 
+
+	/**
+	 * A grid with all the puzzle words placed. 
+	 */
+	private final Grid fullGrid ; 
+
+	/**
+	 * Pending words of {@link #halfGrid} at every position which is in the grid, placeable or not. 
+	 */
+	private final Probe [] probes ; 
+
+	/**
+	 * The probes which are placeable. 
+	 */
+	private final Probe [] placeableProbes ; 
+
+	/**
+	 * {@link #halfGrid} with each placeable probe placed: the children fleshing would offer to the next list. 
+	 */
+	private final Grid [] childGrids ; 
+
+	private final String [] patterns ; 
+
+	EngineBenchmarks(MicroBenchmark microBenchmark, String filter, File cluesFile) throws IOException { 
+		this.microBenchmark = microBenchmark ; 
+		this.filter = filter ; 
+		//////  Word-bank, from a synthetic dictionary
+		this.tmpDir = makeTmpDir(); 
+		writeSyntheticDictionary(new File(tmpDir, "words.txt"), syntheticWordCount, 20201020L); 
+		this.wordBank = WordBank.loadFilesInDir(tmpDir, new String[] {"words.txt"}); 
+		//////  Grids, from the clues-file
+		this.builder = new StandardBuilder(new CrosswordInput(cluesFile), wordBank, qualityMeasureFactory); 
+		Grid [] initGrids = new Builder1Init(builder, builder.clueWords).build().getGrids(); 
+		boolean wasPrintingProgress = Builder.isPrintingProgress ; 
+		Builder.isPrintingProgress = false ; 
+		Grid [] fleshedGrids = new Builder3Flesh(16, 1, -1).addFlesh(builder.buildInfoAtStart, qualityMeasureFactory, initGrids); 
+		Builder.isPrintingProgress = wasPrintingProgress ; 
+		if (fleshedGrids.length==0) throw new RuntimeException("Couldn't place all the words of "+cluesFile.getName()); 
+		this.fullGrid = fleshedGrids[0] ; 
+		this.halfGrid = new Grid(builder); 
+		List<PlacedWord> placedWords = fullGrid.placedWordList ; 
+		for (int i=0 ; i<placedWords.size()/2 ; i++) { 
+			PlacedWord placedWord = placedWords.get(i); 
+			halfGrid.placeWord(placedWord.word, placedWord.row, placedWord.column, placedWord.isAcross); 
+		}
+		//////  Probes and children
+		ArrayList<Probe> probeList = new ArrayList<Probe>(); 
+		ArrayList<Probe> placeableList = new ArrayList<Probe>(); 
+		for (String word : halfGrid.getPendingWords()) { 
+			for (int row=0 ; row<halfGrid.rowCount ; row++) { 
+				for (int column=0 ; column<halfGrid.columnCount ; column++) { 
+					for (boolean isAcross : new boolean[] {true, false}) { 
+						int endRow = isAcross ? row : row+word.length()-1 ; 
+						int endColumn = isAcross ? column+word.length()-1 : column ; 
+						if (endRow>=halfGrid.rowCount || endColumn>=halfGrid.columnCount) continue ; 
+						Probe probe = new Probe(word, row, column, isAcross); 
+						probeList.add(probe); 
+						if (halfGrid.isWordPlaceable(word, row, column, isAcross)) placeableList.add(probe); 
+					}
+				}
+			}
+		}
+		this.probes = probeList.toArray(new Probe[probeList.size()]); 
+		this.placeableProbes = placeableList.toArray(new Probe[placeableList.size()]); 
+		this.childGrids = new Grid[placeableProbes.length] ; 
+		for (int i=0 ; i<placeableProbes.length ; i++) { 
+			Probe probe = placeableProbes[i] ; 
+			halfGrid.placeWord(probe.word, probe.row, probe.column, probe.isAcross); 
+			childGrids[i] = halfGrid.copy(); 
+			halfGrid.unplaceWord(); 
+		}
+		//////  Word-bank patterns: each word of one length, with two of its letters known
+		Random random = new Random(19); 
+		this.patterns = new String[1000] ; 
+		int patternLength = 6 ; 
+		for (int i=0 ; i<patterns.length ; i++) { 
+			String word = wordBank.getWord(patternLength, random.nextInt(wordBank.getWordCount(patternLength))); 
+			char [] pattern = new char[patternLength] ; 
+			Arrays.fill(pattern, WordBank.wildcard); 
+			for (int k=0 ; k<2 ; k++) { 
+				int position = random.nextInt(patternLength); 
+				pattern[position] = word.charAt(position); 
+			}
+			patterns[i] = new String(pattern); 
+		}
+	}
+
+	private static class Probe { 
+		final String word ; 
+		final int row ; 
+		final int column ; 
+		final boolean isAcross ; 
+		Probe(String word, int row, int column, boolean isAcross) { 
+			this.word = word ; 
+			this.row = row ; 
+			this.column = column ; 
+			this.isAcross = isAcross ; 
+		}
+	}
+
+	public static void main(String[] args) throws Exception { 
+		//////  Read the arguments
+		boolean isQuick = false ; 
+		String filter = "" ; 
+		File cluesFile = new File(new File("Examples"), "clueful 10x10.txt"); 
+		for (int i=0 ; i<args.length ; i++) { 
+			String arg = args[i] ; 
+			if (arg.equals("-quick")) { 
+				isQuick = true ; 
+			} else if (arg.equals("-filter") && i+1<args.length) { 
+				filter = args[++i] ; 
+			} else if (arg.startsWith("-")) { 
+				throw new RuntimeException("Unknown option "+arg+". Usage: EngineBenchmarks [-quick] [-filter TEXT] [CLUES-FILE]"); 
+			} else { 
+				cluesFile = new File(arg); 
+			}
+		}
+		MicroBenchmark microBenchmark = isQuick ? new MicroBenchmark(1, 3, 200) : new MicroBenchmark(5, 5, 1000); 
+		//////  Run
+		EngineBenchmarks benchmarks = new EngineBenchmarks(microBenchmark, filter, cluesFile); 
+		System.out.println("Grid "+cluesFile.getName()+": "+benchmarks.halfGrid.placedWordList.size()+" of "+benchmarks.fullGrid.placedWordList.size()+" words placed, "
+				+benchmarks.probes.length+" probes, "+benchmarks.placeableProbes.length+" placeable. Word-bank: "+syntheticWordCount+" synthetic words. "
+				+Runtime.getRuntime().availableProcessors()+" processors, Java "+System.getProperty("java.version")); 
+		System.out.println(MicroBenchmark.getHeading()); 
+		try { 
+			benchmarks.runAll(); 
+		} finally { 
+			benchmarks.deleteTmpDir(); 
+		}
+	}
+
+	private void runAll() throws Exception { 
+		//////  Grid
+		run("Grid.copy", 1, new MicroBenchmark.Body() { 
+			public long run() { 
+				return halfGrid.copy().placedWordList.size(); 
+			}
+		}); 
+		final Grid spareGrid = halfGrid.copy(); 
+		run("Grid.copyFrom (reusing a grid)", 1, new MicroBenchmark.Body() { 
+			public long run() { 
+				spareGrid.copyFrom(halfGrid); 
+				return spareGrid.placedWordList.size(); 
+			}
+		}); 
+		run("Grid.isWordPlaceable", probes.length, new MicroBenchmark.Body() { 
+			public long run() { 
+				long count = 0 ; 
+				for (Probe probe : probes) if (halfGrid.isWordPlaceable(probe.word, probe.row, probe.column, probe.isAcross)) count ++ ; 
+				return count ; 
+			}
+		}); 
+		final String [] pendingWords = halfGrid.getPendingWords().toArray(new String[0]) ; 
+		run("Grid.isWordPlaceable (by slot)", probes.length, new MicroBenchmark.Body() { 
+			public long run() { 
+				long count = 0 ; 
+				SlotTable slotTable = halfGrid.slotTable ; 
+				for (String word : pendingWords) { 
+					for (boolean isAcross : new boolean[] {true, false}) { 
+						int endSlot = slotTable.getEndSlot(word.length(), isAcross) ; 
+						for (int slot=slotTable.getFirstSlot(word.length(), isAcross) ; slot<endSlot ; slot++) if (halfGrid.isWordPlaceable(word, slot)) count ++ ; 
+					}
+				}
+				return count ; 
+			}
+		}); 
+		run("Grid.getPlaceableStarts (per start)", probes.length, new MicroBenchmark.Body() { 
+			public long run() { 
+				long count = 0 ; 
+				for (String word : pendingWords) { 
+					long [] letterMasks = builder.buildInfoAtStart.getLetterMasks(word); 
+					for (int row=0 ; row<halfGrid.rowCount ; row++) count += Long.bitCount(halfGrid.getPlaceableStarts(word, letterMasks, row, true)); 
+					for (int column=0 ; column<halfGrid.columnCount ; column++) count += Long.bitCount(halfGrid.getPlaceableStarts(word, letterMasks, column, false)); 
+				}
+				return count ; 
+			}
+		}); 
+		run("Grid.countLegalStarts (per word)", pendingWords.length, new MicroBenchmark.Body() { 
+			public long run() { 
+				long count = 0 ; 
+				for (String word : pendingWords) count += halfGrid.countLegalStarts(word); 
+				return count ; 
+			}
+		}); 
+		run("Grid.placeWord + unplaceWord", placeableProbes.length, new MicroBenchmark.Body() { 
+			public long run() { 
+				long sum = 0 ; 
+				for (Probe probe : placeableProbes) { 
+					sum += halfGrid.placeWord(probe.word, probe.row, probe.column, probe.isAcross).row ; 
+					halfGrid.unplaceWord(); 
+				}
+				return sum ; 
+			}
+		}); 
+		run("Grid.placeWord + getSignature + unplaceWord", placeableProbes.length, new MicroBenchmark.Body() { 
+			public long run() { 
+				long sum = 0 ; 
+				for (Probe probe : placeableProbes) { 
+					halfGrid.placeWord(probe.word, probe.row, probe.column, probe.isAcross); 
+					sum += halfGrid.getSignature().hashCode(); 
+					halfGrid.unplaceWord(); 
+				}
+				return sum ; 
+			}
+		}); 
+		//////  Quality measure
+		final int totalWordCount = builder.buildInfoAtStart.words.length ; 
+		final UsualQualityMeasure fullMeasure = (UsualQualityMeasure) qualityMeasureFactory.makeQualityMeasure(totalWordCount, totalWordCount); 
+		run("UsualQualityMeasure.computeQuality (tally kept)", 1, new MicroBenchmark.Body() { 
+			public long run() { 
+				return (long) fullMeasure.computeQuality(fullGrid); 
+			}
+		}); 
+		run("UsualQualityMeasure.computeQuality (new tally)", placeableProbes.length, new MicroBenchmark.Body() { 
+			public long run() { 
+				/* Placing a word discards the tally, so each quality derives a new one from the half grid's. */
+				long sum = 0 ; 
+				for (Probe probe : placeableProbes) { 
+					halfGrid.placeWord(probe.word, probe.row, probe.column, probe.isAcross); 
+					sum += (long) fullMeasure.computeQuality(halfGrid); 
+					halfGrid.unplaceWord(); 
+				}
+				return sum ; 
+			}
+		}); 
+		final UsualQualityMeasure childMeasure = (UsualQualityMeasure) qualityMeasureFactory.makeQualityMeasure(totalWordCount, halfGrid.placedWordList.size()+1); 
+		run("UsualQualityMeasure.boundQualityAfterPlacement", placeableProbes.length, new MicroBenchmark.Body() { 
+			public long run() { 
+				/* The same placements, bounded without being placed, by the measure fleshing would use for them (which has span factors). */
+				double halfQuality = childMeasure.computeQuality(halfGrid); 
+				long sum = 0 ; 
+				for (Probe probe : placeableProbes) { 
+					sum += (long) childMeasure.boundQualityAfterPlacement(halfGrid, halfQuality, probe.word, probe.row, probe.column, probe.isAcross); 
+				}
+				return sum ; 
+			}
+		}); 
+		run("UsualQualityMeasure.computeQualityByScanning", 1, new MicroBenchmark.Body() { 
+			public long run() { 
+				return (long) fullMeasure.computeQualityByScanning(fullGrid); 
+			}
+		}); 
+		//////  Lists of grids
+		final int childWordCount = halfGrid.placedWordList.size() + 1 ; 
+		final int maxKept = Math.max(childGrids.length/4, 1) ; 
+		run("SortedGridList.addGrid", childGrids.length, new MicroBenchmark.Body() { 
+			public long run() { 
+				QualityMeasure qualityMeasure = qualityMeasureFactory.makeQualityMeasure(totalWordCount, childWordCount); 
+				SortedGridList list = new SortedGridList(qualityMeasure, maxKept); 
+				return list.addGrids(childGrids, false); 
+			}
+		}); 
+		run("ShardedGridCollector.addGrid", childGrids.length, new MicroBenchmark.Body() { 
+			public long run() { 
+				QualityMeasure qualityMeasure = qualityMeasureFactory.makeQualityMeasure(totalWordCount, childWordCount); 
+				ShardedGridCollector collector = new ShardedGridCollector(qualityMeasure, maxKept); 
+				for (int i=0 ; i<childGrids.length ; i++) collector.addGrid(childGrids[i], i); 
+				return collector.getCurrentCount(); 
+			}
+		}); 
+		//////  Word-bank
+		run("WordBank.getWordIds", patterns.length, new MicroBenchmark.Body() { 
+			public long run() { 
+				long count = 0 ; 
+				for (String pattern : patterns) count += wordBank.getWordIds(pattern).length ; 
+				return count ; 
+			}
+		}); 
+		final String coatLine = "?????E??????" ; 
+		run("WordBank.findWords", 1, new MicroBenchmark.Body() { 
+			public long run() { 
+				return wordBank.findWords(coatLine, 6, 2, 5).size(); 
+			}
+		}); 
+		run("WordBank.loadFilesInDir", 1, new MicroBenchmark.Body() { 
+			public long run() throws IOException { 
+				return WordBank.loadFilesInDir(tmpDir, new String[] {"words.txt"}).getWordCount(6); 
+			}
+		}); 
+		final File snapshotFile = new File(tmpDir, WordBank.snapshotFilename); 
+		wordBank.writeSnapshot(snapshotFile, 1); 
+		run("WordBank.loadSnapshot", 1, new MicroBenchmark.Body() { 
+			public long run() throws IOException { 
+				return WordBank.loadSnapshot(snapshotFile, 1).getWordCount(6); 
+			}
+		}); 
+	}
+
+	/**
+	 * Runs the benchmark if it passes the filter, and prints its result. 
+	 */
+	private void run(String name, int opsPerRun, MicroBenchmark.Body body) throws Exception { 
+		if (!name.contains(filter)) return ; 
+		System.out.println(microBenchmark.measure(name, opsPerRun, body)); 
+	}
+
+	//////  Synthetic dictionary
+
+	/**
+	 * Writes made-up words, in the format {@link WordBank#loadFilesInDir(File, String[])} reads: a header, an empty line, then a word per line. 
+	 * Lengths run from 2 to 15 letters, most of them 5 to 8. 
+	 */
+	static void writeSyntheticDictionary(File file, int wordCount, long seed) throws IOException { 
+		Random random = new Random(seed); 
+		Set<String> words = new HashSet<String>(); 
+		PrintWriter writer = new PrintWriter(file); 
+		try { 
+			writer.println("Synthetic dictionary for benchmarks, seed "+seed); 
+			writer.println(); 
+			while (words.size()<wordCount) { 
+				int length = 2 + random.nextInt(7) + random.nextInt(7) ; 
+				StringBuilder sb = new StringBuilder(); 
+				for (int i=0 ; i<length ; i++) sb.append(letterPool.charAt(random.nextInt(letterPool.length()))); 
+				String word = sb.toString(); 
+				if (words.add(word)) writer.println(word.toLowerCase()); 
+			}
+		} finally { 
+			writer.close(); 
+		}
+	}
+
+	private static File makeTmpDir() throws IOException { 
+		File dir = File.createTempFile("engine-benchmarks", ""); 
+		if (!dir.delete() || !dir.mkdir()) throw new IOException("Can't create folder "+dir.getPath()); 
+		return dir ; 
+	}
+
+	private void deleteTmpDir() { 
+		File [] files = tmpDir.listFiles(); 
+		if (files!=null) for (File file : files) file.delete(); 
+		tmpDir.delete(); 
+	}
+
+}
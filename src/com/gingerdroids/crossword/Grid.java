@@ -1,17 +1,20 @@
 package com.gingerdroids.crossword;
 
+import java.io.File;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.io.Writer;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Collection;
+import java.util.Collections;
 import java.util.HashMap;
 import java.util.HashSet;
 import java.util.List;
 import java.util.Map;
-import java.util.Map.Entry;
+import java.util.Random;
 import java.util.Set;
 
-import com.gingerdroids.crossword.BuildInfo.StringList;
-import com.gingerdroids.crossword.Builder3Flesh.CellSet;
 import com.gingerdroids.crossword.apps.PdfClueless;
 import com.gingerdroids.crossword.Cell;
 import com.gingerdroids.utils_java.InstanceCounter;
@@ -33,23 +36,63 @@ public class Grid {
 	
 	private double quality ; 
 	
-	private Integer longestPendingLength ; 
-	
 	private Integer longestGapLength ; 
 
 	public final int rowCount ; 
 	public final int columnCount ; 
-	public final Cell[][] rows ; // First index is row. 
-	public final Cell[][] columns ; // First index is column. 
-	public final boolean[][] rowHardLeftEdges ; 
-	public final boolean[][] columnHardTopEdges ; 
-	public final boolean[][] rowWithinWordLeftwards ; 
-	public final boolean[][] columnWithinWordUpwards ; 
 	
 	/**
-	 * List of words from clues not yet placed in the grid. 
-	 * Words that can never be placed are excluded. (We may know there is no gap large enough.)
-	 * The list is sorted shortest first. 
+	 * Distance between vertically adjacent cells in {@link #letters} and {@link #flags}. 
+	 * There is one spare column (and one spare row) so the right and bottom edges of the grid have somewhere to live. 
+	 */
+	final int stride ; 
+	
+	/**
+	 * Every slot of this grid's size, shared with all the other grids of that size. 
+	 */
+	final SlotTable slotTable ; 
+	
+	/**
+	 * The letter in each cell, or {@link #space}. Indexed by {@link #cellIndex(int, int)}. 
+	 * Letters are simple ASCII, so a byte is enough. 
+	 */
+	private final byte [] letters ; 
+	
+	/**
+	 * Bit-flags for each cell, and for the edges to the left of and above it. Indexed by {@link #cellIndex(int, int)}. 
+	 * <p>
+	 * (October 2020 profiling) Copying grids dominated the run time when each cell was a separate object. 
+	 * Keeping the whole grid in two flat arrays means a copy is two array-copies. 
+	 */
+	private final byte [] flags ; 
+	
+	static final int IN_ACROSS = 0x01 ; 
+	static final int IN_DOWN = 0x02 ; 
+	static final int PUZZLE_CELL = 0x04 ; 
+	static final int HARD_LEFT_EDGE = 0x08 ; // Edge between this cell and the cell to its left. 
+	static final int HARD_TOP_EDGE = 0x10 ; // Edge between this cell and the cell above it. 
+	static final int WITHIN_WORD_LEFTWARDS = 0x20 ; // This cell and the cell to its left are in the same across-word. 
+	static final int WITHIN_WORD_UPWARDS = 0x40 ; // This cell and the cell above it are in the same down-word. 
+	
+	/**
+	 * Clue-numbers of the cells, created when the crossword is numbered. Most grids never have this. 
+	 */
+	private int [] wordNumbers ; 
+	
+	/**
+	 * Which puzzle words are placed in the grid, one bit for each word id (see {@link BuildInfo#wordsById}). 
+	 * A copy of the grid copies the array, which is only a long or two, rather than copying sets of words. 
+	 */
+	private final long [] placedPuzzleWords ; 
+	
+	/**
+	 * Words placed in the grid which aren't puzzle words (ie, coat words), or null if there are none. 
+	 */
+	private Set<String> placedOtherWords ; 
+	
+	/**
+	 * List of words from clues not yet placed in the grid, sorted shortest first, made from {@link #placedPuzzleWords} when asked for. 
+	 * Null if it hasn't been asked for since a word was placed. It is never changed, so copies of the grid share it. 
 	 */
 	private List<String> pendingWords ; 
 
@@ -58,10 +101,6 @@ public class Grid {
 	 */
 	public final ArrayList<PlacedWord> placedWordList = new ArrayList<Grid.PlacedWord>(); 
 	
-	/**
-	 * All words placed in the grid, both those the human must guess, and those that are given to the human. 
-	 */
-	public final Set<String> placedWordSet = new HashSet<String>(); 
 
 	/**
 	 * Map from words (in canonical form) to their {@link PuzzleWord} object, for words the human must guess. 
@@ -74,27 +113,34 @@ public class Grid {
 	boolean isPuzzleBuilding = true ; 
 	
 	/**
-	 * Utility for "fleshing" stage of placing words in grid. Should be null elsewhere. 
-	 * <p>
-	 * These cells can be crossed by a down-word. 
-	 * For efficiency reasons, not all crossable cells should be in this list ; there are some cells we have tried to cross with our available words, and failed. 
+	 * Utility for "fleshing" stage of placing words in grid: the cells available for crossing-words, by letter. 
+	 * Null until needed. Placing a word sets this to null ; unplacing it restores the previous index. 
+	 * 
+	 * @see #getCrossableCells()
 	 */
-	HashMap<Character, CellSet> freeAcrossCellsByLetter = new HashMap<Character,CellSet>(); // Locs in grid available for crossing-words
+	private CrossableCells crossableCells ; 
 	
 	/**
-	 * Utility for "fleshing" stage of placing words in grid. Should be null elsewhere. 
+	 * A compressed version of the grid, used to prevent duplicates during the grid-building algorithm. 
 	 * <p>
-	 * These cells can be crossed by an across-word. 
-	 * For efficiency reasons, not all crossable cells should be in this list ; there are some cells we have tried to cross with our available words, and failed. 
+	 * If the grid is altered - eg, placing a word - this should be set to null. 
 	 */
-	HashMap<Character, CellSet> freeDownCellsByLetter = new HashMap<Character,CellSet>(); 
+	private String signature ; 
 	
 	/**
-	 * A compressed version of the grid, used to prevent duplicates during the grid-building algorithm. 
+	 * A 64-bit Zobrist hash of the same information as {@link #signature}, kept up to date by {@link #placeWord(String, int, int, boolean)}. 
+	 * Used to prevent duplicates. The string signature is only used to check for hash collisions while debugging. 
 	 * <p>
-	 * If the grid is altered - eg, placing a word - this should be set to null. 
+	 * Each cell XORs in a key for its letter, and a key for each of across and down it is in. 
+	 * The empty grid hashes to zero. 
+	 * 
+	 * @see #zobristKey(int, int)
 	 */
-	private String signature ; 
+	private long signatureHash = 0 ; 
+	
+	private static final int zobristAcrossCode = 128 ; // Letters are below 128. 
+	private static final int zobristDownCode = 129 ; 
+	private static final int zobristCodeCount = 130 ; 
 	
 	/**
 	 * A grid derived from this one by adding a word. It is the best such grid found so far. 
@@ -113,31 +159,58 @@ public class Grid {
 	 * @see Grid#addChild(Grid, QualityMeasure)
 	 */
 	protected Grid next2 ; 
+	
+	/**
+	 * Qualities of the children in {@link #next1} and {@link #next2}, and whether each has been filled. 
+	 * A child can be recorded without its grid (which is then null) when it was too poor to be worth copying. 
+	 * It still takes part in choosing later children, so the same children are chosen either way. 
+	 */
+	private double next1Quality, next2Quality ; 
+	private boolean hasNext1, hasNext2 ; 
+	
+	/**
+	 * Undo-log for {@link #unplaceWord()}, one entry per word placed, most recent last. 
+	 * It is not copied by the copy-constructor, so a copy cannot unplace words placed before it was made. 
+	 * Created when first needed. 
+	 */
+	private ArrayList<UndoEntry> undoLog ; 
 
-	private void resetInnerArrays(int rowCount, int columnCount) { 
-		for (int i=0 ; i<rowCount ; i++) { 
-			for (int j=0 ; j<columnCount ; j++) { 
-				Cell cell = rows[i][j] ; 
-				if (cell!=null) { 
-					cell.reset(); 
-				} else { 
-					cell = new Cell(i, j); 
-				}
-				rows[i][j] = cell ; 
-				columns[j][i] = cell ; 
-			}
-		}
-		for (int i=0 ; i<rowCount ; i++) { 
-			Arrays.fill(rowHardLeftEdges[i], false); 
-			rowHardLeftEdges[i][0] = true ; 
-			rowHardLeftEdges[i][columnCount] = true ; 
-			Arrays.fill(rowWithinWordLeftwards[i], false); 
-		}
-		for (int j=0 ; j<columnCount ; j++) { 
-			fillIntersticeColumn(j); 
-		}
-		fillIntersticeColumn(columnCount);
-	}
+	/**
+	 * Tallies for {@link UsualQualityMeasure}, or null if not yet computed. 
+	 * Placing a word sets this to null; it is recomputed from the previous tally, which is kept in the undo-log. 
+	 * 
+	 * @see #getTally()
+	 */
+	private GridTally tally ; 
+
+	/**
+	 * A tally discarded by {@link #unplaceWord()}, which can be overwritten by the next one computed. 
+	 */
+	private GridTally spareTally ; 
+
+	/**
+	 * Lengths of the free runs from each cell, indexed by cell-index, or null if they are not being kept (see {@link #keepFreeRuns()}). 
+	 * A free run is the cells after the cell in one direction, up to the edge of the grid or the first cell in a word of that direction. 
+	 * Eg, {@link #freeRightwards} is how far an across word through the cell could extend to the right. 
+	 */
+	private byte [] freeRightwards, freeLeftwards, freeDownwards, freeUpwards ; 
+	
+	/**
+	 * Bit-masks of each row and column, so a placement can be checked with a few bit-operations rather than cell by cell. 
+	 * Rows are lines 0 to rowCount-1, and columns follow them. Each line has three masks, from {@link #lineMaskIndex(int, int)}: 
+	 * {@link #LINE_LETTERS} (cells with letters), {@link #LINE_IN_WORD} (cells in a word of the line's direction, ie across for a row), 
+	 * and {@link #LINE_EDGES} (cells with a word-boundary or a within-word flag before them, in the line's direction, including the spare cell past the end). 
+	 * Bit n is for the n'th cell along the line. 
+	 * <p>
+	 * Updated by each placement and unplacement, and copied with the grid. 
+	 * Null if the grid is too big for a line to fit in a long (see {@link #maxBatchedLineLength}). 
+	 */
+	private final long [] lineMasks ; 
+	
+	static final int LINE_LETTERS = 0 ; 
+	static final int LINE_IN_WORD = 1 ; 
+	static final int LINE_EDGES = 2 ; 
+	private static final int lineMaskCount = 3 ; 
 
 	/**
 	 * Constructs an empty grid. 
@@ -147,42 +220,30 @@ public class Grid {
 		//////  Lengths 
 		this.rowCount = builder.rowCount ; 
 		this.columnCount = builder.columnCount ; 
-		//////  Create outer arrays 
-		this.rows = new Cell[rowCount][] ; 
-		this.rowHardLeftEdges = new boolean[rowCount+1][] ; 
-		this.rowWithinWordLeftwards = new boolean[rowCount+1][] ; 
-		this.columns = new Cell[columnCount][] ; 
-		this.columnHardTopEdges = new boolean[columnCount+1][] ; 
-		this.columnWithinWordUpwards = new boolean[columnCount+1][] ; 
-		//////  Create inner arrays 
+		this.stride = columnCount + 1 ; 
+		this.slotTable = SlotTable.forSize(rowCount, columnCount); 
+		//////  Create arrays 
+		int cellSlotCount = (rowCount+1) * stride ; 
+		this.letters = new byte[cellSlotCount] ; 
+		this.flags = new byte[cellSlotCount] ; 
+		this.placedPuzzleWords = new long[builder.buildInfoAtStart.wordMaskLength] ; 
+		//////  Fill arrays 
+		Arrays.fill(letters, (byte) space); 
 		for (int i=0 ; i<rowCount ; i++) { 
-			rows[i] = new Cell[columnCount] ; 
-			rowHardLeftEdges[i] = new boolean[columnCount+1]; 
-			rowWithinWordLeftwards[i] = new boolean[columnCount+1]; 
+			flags[cellIndex(i, 0)] |= HARD_LEFT_EDGE ; 
+			flags[cellIndex(i, columnCount)] |= HARD_LEFT_EDGE ; 
 		}
-		for (int j=0 ; j<columnCount ; j++) { 
-			columns[j] = new Cell[rowCount] ; 
-			createIntersticeColumn(j); 
+		for (int j=0 ; j<=columnCount ; j++) { 
+			flags[cellIndex(0, j)] |= HARD_TOP_EDGE ; 
+			flags[cellIndex(rowCount, j)] |= HARD_TOP_EDGE ; 
 		}
-		createIntersticeColumn(columnCount); 
-		//////  Fill inner arrays 
-		for (int i=0 ; i<rowCount ; i++) { 
-			for (int j=0 ; j<columnCount ; j++) { 
-				Cell cell = new Cell(i, j); 
-				rows[i][j] = cell ; 
-				columns[j][i] = cell ; 
-			}
-		}
-		for (int i=0 ; i<rowCount ; i++) { 
-			Arrays.fill(rowHardLeftEdges[i], false); 
-			rowHardLeftEdges[i][0] = true ; 
-			rowHardLeftEdges[i][columnCount] = true ; 
-			Arrays.fill(rowWithinWordLeftwards[i], false); 
-		}
-		for (int j=0 ; j<columnCount ; j++) { 
-			fillIntersticeColumn(j); 
+		if (rowCount<=maxBatchedLineLength && columnCount<=maxBatchedLineLength) { 
+			this.lineMasks = new long[lineMaskCount*(rowCount+columnCount)] ; 
+			for (int row=0 ; row<rowCount ; row++) updateLineMasks(row, true); 
+			for (int column=0 ; column<columnCount ; column++) updateLineMasks(column, false); 
+		} else { 
+			this.lineMasks = null ; 
 		}
-		fillIntersticeColumn(columnCount); 
 	}
 	
 	/**
@@ -193,69 +254,42 @@ public class Grid {
 		 * (October 2020)
 		 * I profiled the app on a typical crossword. 
 		 * It spends nearly half its time in the Grid copy-constructor. 
-		 * Replacing the call to the copy-constructor with something more efficient would make the code more complicated 
-		 * (at a data-structure level, not algorithm) and the last thing this code needs is more complicated stuff. 
+		 * The cells are now held in flat arrays (see 'flags'), so copying them is cheap. 
+		 * The placed puzzle words are a bitmask, so the only collection copied is the list of placed words. 
 		 */ 
 		this.builder = old.builder ; 
 		//////  Lengths 
 		this.rowCount = old.rowCount ; 
 		this.columnCount = old.columnCount ; 
-		//////  Create outer arrays 
-		this.rows = new Cell[rowCount][] ; 
-		this.rowHardLeftEdges = new boolean[rowCount+1][] ; 
-		this.rowWithinWordLeftwards = new boolean[rowCount+1][] ; 
-		this.columns = new Cell[columnCount][] ; 
-		this.columnHardTopEdges = new boolean[columnCount+1][] ; 
-		this.columnWithinWordUpwards = new boolean[columnCount+1][] ; 
-		//////  Copy inner arrays 
-		for (int i=0 ; i<rowCount ; i++) { 
-			rows[i] = new Cell[columnCount] ; 
-			for (int j=0 ; j<columnCount ; j++) rows[i][j] = new Cell(old.rows[i][j]); 
-			rowHardLeftEdges[i] = Arrays.copyOf(old.rowHardLeftEdges[i], columnCount+1); 
-			rowWithinWordLeftwards[i] = Arrays.copyOf(old.rowWithinWordLeftwards[i], columnCount+1); 
-		}
-		for (int j=0 ; j<columnCount ; j++) { 
-			columns[j] = new Cell[rowCount] ; 
-			for (int i=0 ; i<rowCount ; i++) columns[j][i] = rows[i][j] ; 
-			copyIntersticeColumn(old, j); 
-		}
-		copyIntersticeColumn(old, columnCount); 
-		//////  Copy free cells
-		{ 
-			if (old.freeAcrossCellsByLetter!=null) { 
-				this.freeAcrossCellsByLetter = new HashMap<Character, Builder3Flesh.CellSet>(); 
-				Set<Entry<Character, CellSet>> entrySet = old.freeAcrossCellsByLetter.entrySet();
-				for (Entry<Character, CellSet> entry : entrySet) { 
-					CellSet cellSet = new CellSet(); 
-					for (Cell oldCell : entry.getValue()) { 
-						cellSet.add(rows[oldCell.row][oldCell.column]); 
-					}
-					this.freeAcrossCellsByLetter.put(entry.getKey(), cellSet); 
-				}
-			}
-			if (old.freeDownCellsByLetter!=null) { 
-				this.freeDownCellsByLetter = new HashMap<Character, Builder3Flesh.CellSet>(); 
-				Set<Entry<Character, CellSet>> entrySet = old.freeDownCellsByLetter.entrySet();
-				for (Entry<Character, CellSet> entry : entrySet) { 
-					CellSet cellSet = new CellSet(); 
-					for (Cell oldCell : entry.getValue()) { 
-						cellSet.add(rows[oldCell.row][oldCell.column]); 
-					}
-					this.freeDownCellsByLetter.put(entry.getKey(), cellSet); 
-				}
-			}
-		}
-		//////  Copy pending words
-		if (old.pendingWords!=null) this.pendingWords = new ArrayList<String>(old.pendingWords); 
+		this.stride = old.stride ; 
+		this.slotTable = old.slotTable ; 
+		//////  Copy cells
+		this.letters = Arrays.copyOf(old.letters, old.letters.length); 
+		this.flags = Arrays.copyOf(old.flags, old.flags.length); 
+		this.lineMasks = (old.lineMasks!=null) ? Arrays.copyOf(old.lineMasks, old.lineMasks.length) : null ; 
+		if (old.wordNumbers!=null) this.wordNumbers = Arrays.copyOf(old.wordNumbers, old.wordNumbers.length); 
+		//////  Copy placed and pending words
+		this.placedPuzzleWords = Arrays.copyOf(old.placedPuzzleWords, old.placedPuzzleWords.length); 
+		if (old.placedOtherWords!=null) this.placedOtherWords = new HashSet<String>(old.placedOtherWords); 
+		this.pendingWords = old.pendingWords ; 
 		//////  Copy other fields
 		this.quality = old.quality ; 
 		for (PlacedWord oldPlacedWord : old.placedWordList) { 
 			PlacedWord newPlacedWord = oldPlacedWord ;  //  WAS new PlacedWord(oldPlacedWord); 
 			placedWordList.add(newPlacedWord); 
 		}
-		placedWordSet.addAll(old.placedWordSet); 
 		this.signature = old.signature ; 
+		this.signatureHash = old.signatureHash ; 
 		this.isPuzzleBuilding = old.isPuzzleBuilding ; 
+		this.tally = old.tally ; 
+		if (tally!=null) tally.isShared = true ; 
+		this.crossableCells = old.crossableCells ; 
+		if (old.freeRightwards!=null) { 
+			this.freeRightwards = Arrays.copyOf(old.freeRightwards, old.freeRightwards.length); 
+			this.freeLeftwards = Arrays.copyOf(old.freeLeftwards, old.freeLeftwards.length); 
+			this.freeDownwards = Arrays.copyOf(old.freeDownwards, old.freeDownwards.length); 
+			this.freeUpwards = Arrays.copyOf(old.freeUpwards, old.freeUpwards.length); 
+		}
 	}
 	
 	/**
@@ -266,70 +300,352 @@ public class Grid {
 		return new Grid(this); 
 	}
 	
-	boolean hasLetter(int i, int j) { 
-		return rows[i][j].hasLetter(); 
+	/**
+	 * Makes this grid a copy of the other, as the copy-constructor {@link #Grid(Grid)} would, but reusing this grid's arrays. 
+	 * Used by {@link GridPool} to recycle grids which are no longer wanted. Keep it in step with the copy-constructor. 
+	 * <p>
+	 * Nothing else may still refer to this grid. 
+	 */
+	void copyFrom(Grid old) { 
+		if (old.builder!=builder) throw new IllegalArgumentException("Grids are from different builders."); 
+		//////  Copy cells
+		System.arraycopy(old.letters, 0, letters, 0, letters.length); 
+		System.arraycopy(old.flags, 0, flags, 0, flags.length); 
+		if (lineMasks!=null) System.arraycopy(old.lineMasks, 0, lineMasks, 0, lineMasks.length); 
+		if (old.wordNumbers==null) { 
+			this.wordNumbers = null ; 
+		} else { 
+			if (wordNumbers==null) wordNumbers = new int[old.wordNumbers.length] ; 
+			System.arraycopy(old.wordNumbers, 0, wordNumbers, 0, wordNumbers.length); 
+		}
+		//////  Copy placed and pending words
+		System.arraycopy(old.placedPuzzleWords, 0, placedPuzzleWords, 0, placedPuzzleWords.length); 
+		if (old.placedOtherWords==null) { 
+			this.placedOtherWords = null ; 
+		} else { 
+			if (placedOtherWords==null) placedOtherWords = new HashSet<String>(); 
+			placedOtherWords.clear(); 
+			placedOtherWords.addAll(old.placedOtherWords); 
+		}
+		this.pendingWords = old.pendingWords ; 
+		this.mapWordToPuzzleWord = null ; 
+		//////  Copy other fields
+		this.currentQualityMeasure = null ; 
+		this.quality = old.quality ; 
+		this.longestGapLength = null ; 
+		placedWordList.clear(); 
+		placedWordList.addAll(old.placedWordList); 
+		this.signature = old.signature ; 
+		this.signatureHash = old.signatureHash ; 
+		this.isPuzzleBuilding = old.isPuzzleBuilding ; 
+		if (tally!=null && !tally.isShared) spareTally = tally ; // Only this grid had it. 
+		this.tally = old.tally ; 
+		if (tally!=null) tally.isShared = true ; 
+		this.crossableCells = old.crossableCells ; 
+		if (old.freeRightwards==null) { 
+			this.freeRightwards = this.freeLeftwards = this.freeDownwards = this.freeUpwards = null ; 
+		} else { 
+			if (freeRightwards==null) keepFreeRuns(); 
+			System.arraycopy(old.freeRightwards, 0, freeRightwards, 0, freeRightwards.length); 
+			System.arraycopy(old.freeLeftwards, 0, freeLeftwards, 0, freeLeftwards.length); 
+			System.arraycopy(old.freeDownwards, 0, freeDownwards, 0, freeDownwards.length); 
+			System.arraycopy(old.freeUpwards, 0, freeUpwards, 0, freeUpwards.length); 
+		}
+		//////  Forget this grid's own history
+		this.next1 = this.next2 = null ; 
+		this.next1Quality = this.next2Quality = 0 ; 
+		this.hasNext1 = this.hasNext2 = false ; 
+		if (undoLog!=null) undoLog.clear(); 
+	}
+	
+	/**
+	 * Index into {@link #letters} and {@link #flags}. 
+	 * Moving one cell right adds one, moving one cell down adds {@link #stride}. 
+	 */
+	final int cellIndex(int row, int column) { 
+		return row * stride + column ; 
 	}
 	
-	private void copyIntersticeColumn(Grid old, int j) { 
-		columnHardTopEdges[j] = Arrays.copyOf(old.columnHardTopEdges[j], rowCount+1); 
-		columnWithinWordUpwards[j] = Arrays.copyOf(old.columnWithinWordUpwards[j], rowCount+1); 
+	char getCharAt(int cellIndex) { 
+		return (char) letters[cellIndex] ; 
 	}
-
+	
+	boolean hasLetterAt(int cellIndex) { 
+		return letters[cellIndex]!=space ; 
+	}
+	
+	int getFlagsAt(int cellIndex) { 
+		return flags[cellIndex] ; 
+	}
+	
+	public char getChar(int row, int column) { 
+		return (char) letters[cellIndex(row, column)] ; 
+	}
+	
+	public boolean hasLetter(int row, int column) { 
+		return letters[cellIndex(row, column)]!=space ; 
+	}
+	
+	public boolean isInAcross(int row, int column) { 
+		return (flags[cellIndex(row, column)]&IN_ACROSS)!=0 ; 
+	}
+	
+	public boolean isInDown(int row, int column) { 
+		return (flags[cellIndex(row, column)]&IN_DOWN)!=0 ; 
+	}
+	
+	public boolean isCrossingCell(int row, int column) { 
+		final int bothMask = IN_ACROSS|IN_DOWN ; 
+		return (flags[cellIndex(row, column)]&bothMask)==bothMask ; 
+	}
+	
+	public boolean isPuzzleCell(int row, int column) { 
+		return (flags[cellIndex(row, column)]&PUZZLE_CELL)!=0 ; 
+	}
+	
 	/**
-	 * Constructor-assist method. 
+	 * Whether there is a word-boundary between the given cell and the cell to its left. 
+	 * The column may be {@link #columnCount}, for the right edge of the grid. 
 	 */
-	private void createIntersticeColumn(int j) {
-		columnHardTopEdges[j] = new boolean[rowCount+1]; 
-		columnWithinWordUpwards[j] = new boolean[rowCount+1]; 
-	} 
-
+	public boolean isHardLeftEdge(int row, int column) { 
+		return (flags[cellIndex(row, column)]&HARD_LEFT_EDGE)!=0 ; 
+	}
+	
+	/**
+	 * Whether there is a word-boundary between the given cell and the cell above it. 
+	 * The row may be {@link #rowCount}, for the bottom edge of the grid. 
+	 */
+	public boolean isHardTopEdge(int row, int column) { 
+		return (flags[cellIndex(row, column)]&HARD_TOP_EDGE)!=0 ; 
+	}
+	
 	/**
-	 * Constructor-assist method. 
+	 * The clue-number of the cell, or zero if it has none. 
 	 */
-	private void fillIntersticeColumn(int j) {
-		Arrays.fill(columnHardTopEdges[j], false); 
-		columnHardTopEdges[j][0] = true ; 
-		columnHardTopEdges[j][rowCount] = true ; 
-		Arrays.fill(columnWithinWordUpwards[j], false);
-	} 
+	public int getWordNumber(int row, int column) { 
+		if (wordNumbers==null) return 0 ; 
+		return wordNumbers[cellIndex(row, column)] ; 
+	}
+	
+	void setWordNumber(int row, int column, int wordNumber) { 
+		if (wordNumbers==null) wordNumbers = new int[letters.length] ; 
+		wordNumbers[cellIndex(row, column)] = wordNumber ; 
+	}
 	
+	/**
+	 * Returns a {@link Cell} looking at the given position in this grid. 
+	 * The cell is a view, not a copy: it sees later changes to the grid. 
+	 */
+	public Cell getCell(int row, int column) { 
+		return new Cell(this, row, column); 
+	}
+
 	boolean isWordPlaceable(String word, int row, int column, boolean isAcross) { 
 		int wordLength = word.length();
-		int i0 = row ; 
-		int j0 = column ; 
-		int iDelta = isAcross ? 0 : 1 ; 
-		int jDelta = isAcross ? 1 : 0 ; 
 		//////  Do checks 
-		if (0>i0 || i0>=rowCount) return false ; 
-		if (0>j0 || j0>=columnCount) return false ; 
+		if (0>row || row>=rowCount) return false ; 
+		if (0>column || column>=columnCount) return false ; 
 		if (isAcross) { 
-			if (j0+wordLength>columnCount) return false ; 
+			if (column+wordLength>columnCount) return false ; 
 		} else { 
-			if (i0+wordLength>rowCount) return false ; 
+			if (row+wordLength>rowCount) return false ; 
 		}
-		for (int x=0 ; x<wordLength ; x++) { 
-			char wordCh = word.charAt(x); 
-			int i = i0+x*iDelta;
-			int j = j0+x*jDelta;
-			Cell cell = rows[i][j]; 
-			char cellCh = cell.ch ; 
-			if (x>0) { 
-				if (isAcross) { 
-					if (rowHardLeftEdges[i][j]) return false ; 
-					if (rowWithinWordLeftwards[i][j]) return false ; 
-				} else { 
-					if (columnHardTopEdges[j][i]) return false ; 
-					if (columnWithinWordUpwards[j][i]) return false ; 
-				} 
+		return isWordPlaceableAt(word, cellIndex(row, column), isAcross ? row : rowCount+column, isAcross ? column : row, isAcross); 
+	}
+	
+	/**
+	 * Whether the word can be placed in a slot of {@link #slotTable}, as for {@link #isWordPlaceable(String, int, int, boolean)}. 
+	 * The slot is always within the grid, so it skips the bounds checks. The word must be the slot's length. 
+	 */
+	boolean isWordPlaceable(String word, int slot) { 
+		SlotTable slots = slotTable ; 
+		boolean isAcross = slots.isAcrosses[slot] ; 
+		int line = slots.lines[slot] ; 
+		return isWordPlaceableAt(word, slots.startIndices[slot], isAcross ? line : rowCount+line, slots.lineStarts[slot], isAcross); 
+	}
+	
+	/**
+	 * Checks a placement already known to be within the grid. 
+	 * 
+	 * @param maskLine The line in {@link #lineMasks}: the row, or rowCount plus the column. 
+	 * @param start How far along the line the word starts. 
+	 */
+	private boolean isWordPlaceableAt(String word, int startIndex, int maskLine, int start, boolean isAcross) { 
+		int wordLength = word.length(); 
+		int step = isAcross ? 1 : stride ; 
+		if (lineMasks!=null) { 
+			/* The masks rule out most placements, and leave only the letters to compare. */
+			int maskIndex = lineMaskIndex(maskLine, LINE_LETTERS) ; 
+			long span = ((1L<<wordLength) - 1) << start ; 
+			if ((lineMasks[maskIndex+LINE_IN_WORD]&span)!=0) return false ; 
+			if ((lineMasks[maskIndex+LINE_EDGES]&span&~(1L<<start))!=0) return false ; 
+			for (long lettered=lineMasks[maskIndex+LINE_LETTERS]&span ; lettered!=0 ; lettered&=lettered-1) { 
+				int cell = Long.numberOfTrailingZeros(lettered); 
+				if (letters[startIndex+(cell-start)*step]!=word.charAt(cell-start)) return false ; 
 			}
+			return true ; 
+		}
+		return isWordPlaceableByFlags(word, startIndex, isAcross); 
+	}
+	
+	/**
+	 * Checks a placement already known to be within the grid, cell by cell from {@link #flags} and {@link #letters}, without the {@link #lineMasks}. 
+	 */
+	private boolean isWordPlaceableByFlags(String word, int startIndex, boolean isAcross) { 
+		int wordLength = word.length(); 
+		int step = isAcross ? 1 : stride ; 
+		int edgeMask = isAcross ? HARD_LEFT_EDGE|WITHIN_WORD_LEFTWARDS : HARD_TOP_EDGE|WITHIN_WORD_UPWARDS ; 
+		int sameDirectionMask = isAcross ? IN_ACROSS : IN_DOWN ; 
+		int index = startIndex ; 
+		for (int x=0 ; x<wordLength ; x++, index+=step) { 
+			int cellFlags = flags[index] ; 
+			if (x>0 && (cellFlags&edgeMask)!=0) return false ; 
+			char cellCh = (char) letters[index] ; 
 			if (cellCh!=space) { 
-				if (cellCh!=wordCh) return false ; 
-				if (isAcross ? cell.isInAcross : cell.isInDown) return false ; 
+				if (cellCh!=word.charAt(x)) return false ; 
+				if ((cellFlags&sameDirectionMask)!=0) return false ; 
 			}
 		}
 		return true ; 
 	}
 	
+	/**
+	 * Longest row or column kept in {@link #lineMasks}, so a line (and the edge past its end) fits in the bits of a long. 
+	 */
+	static final int maxBatchedLineLength = 63 ; 
+	
+	/**
+	 * Where along a row (for an across word) or a column (for a down word) the word could be placed, as bits of a long: 
+	 * bit n is set if {@link #isWordPlaceable(String, int, int, boolean)} is true for the start in column (or row) n. 
+	 * <p>
+	 * All the starts are checked together. Each cell of the line in the {@link #lineMasks} rules out the starts it clashes with, 
+	 * rather than each start reading the cells of its word in turn. 
+	 * A cell ruled out by a letter only rules out the starts which would put a different letter there, which are found from the word's letter masks. 
+	 * 
+	 * @param letterMasks The word's {@link #makeLetterMasks(String)}, made once for all the lines checked. 
+	 * @param line The row, for an across word, or the column, for a down word. 
+	 * The grid must be no bigger than {@link #maxBatchedLineLength} each way: bigger grids should be checked a start at a time. 
+	 */
+	long getPlaceableStarts(String word, long [] letterMasks, int line, boolean isAcross) { 
+		if (lineMasks==null) throw new IllegalArgumentException("Grid of "+rowCount+"x"+columnCount+" is too big to check lines all at once."); 
+		int wordLength = word.length(); 
+		int lineLength = isAcross ? columnCount : rowCount ; 
+		if (line<0 || line>=(isAcross ? rowCount : columnCount)) return 0 ; 
+		if (wordLength>lineLength || wordLength==0) return 0 ; 
+		int maskIndex = isAcross ? lineMaskIndex(line, LINE_LETTERS) : lineMaskIndex(rowCount+line, LINE_LETTERS) ; 
+		long wordSpan = (1L<<wordLength) - 1 ; // Shifted to the first start covering a cell, the starts covering it. 
+		long clashes = 0 ; 
+		for (long edges=lineMasks[maskIndex+LINE_EDGES] ; edges!=0 ; edges&=edges-1) { 
+			int cell = Long.numberOfTrailingZeros(edges); 
+			clashes |= shiftLeft(wordSpan>>>1, cell-wordLength+1) ; // Words which start before the edge, and cover it. 
+		}
+		long inWord = lineMasks[maskIndex+LINE_IN_WORD] ; 
+		for (long bits=inWord ; bits!=0 ; bits&=bits-1) { 
+			int cell = Long.numberOfTrailingZeros(bits); 
+			clashes |= shiftLeft(wordSpan, cell-wordLength+1) ; 
+		}
+		for (long crossable=lineMasks[maskIndex+LINE_LETTERS]&~inWord ; crossable!=0 ; crossable&=crossable-1) { 
+			int cell = Long.numberOfTrailingZeros(crossable); 
+			int cellCh = isAcross ? letters[cellIndex(line, cell)] : letters[cellIndex(cell, line)] ; 
+			clashes |= shiftLeft(wordSpan&~letterMasks[cellCh], cell-wordLength+1) ; 
+		}
+		long inGridStarts = (1L<<(lineLength-wordLength+1)) - 1 ; 
+		return inGridStarts & ~clashes ; 
+	}
+	
+	/**
+	 * How many places the word could be placed in the grid, across and down. 
+	 * Cheap enough for heuristics, eg to see which words have few places left. 
+	 */
+	int countLegalStarts(String word) { 
+		int count = 0 ; 
+		if (lineMasks!=null) { 
+			long [] letterMasks = builder.buildInfoAtStart.getLetterMasks(word); 
+			for (int row=0 ; row<rowCount ; row++) count += Long.bitCount(getPlaceableStarts(word, letterMasks, row, true)); 
+			for (int column=0 ; column<columnCount ; column++) count += Long.bitCount(getPlaceableStarts(word, letterMasks, column, false)); 
+		} else { 
+			int wordLength = word.length(); 
+			for (int slot=slotTable.getFirstSlot(wordLength, true), endSlot=slotTable.getEndSlot(wordLength, true) ; slot<endSlot ; slot++) { 
+				if (isWordPlaceable(word, slot)) count ++ ; 
+			}
+			for (int slot=slotTable.getFirstSlot(wordLength, false), endSlot=slotTable.getEndSlot(wordLength, false) ; slot<endSlot ; slot++) { 
+				if (isWordPlaceable(word, slot)) count ++ ; 
+			}
+		}
+		return count ; 
+	}
+	
+	/**
+	 * Index in {@link #lineMasks} of one of a line's masks. 
+	 * 
+	 * @param line The row, or rowCount plus the column. 
+	 * @param mask {@link #LINE_LETTERS}, {@link #LINE_IN_WORD} or {@link #LINE_EDGES}. 
+	 */
+	private static int lineMaskIndex(int line, int mask) { 
+		return line*lineMaskCount + mask ; 
+	}
+	
+	/**
+	 * Recomputes the masks of a row or column from its cells. 
+	 */
+	private void updateLineMasks(int line, boolean isAcross) { 
+		int lineLength = isAcross ? columnCount : rowCount ; 
+		int step = isAcross ? 1 : stride ; 
+		int edgeMask = isAcross ? HARD_LEFT_EDGE|WITHIN_WORD_LEFTWARDS : HARD_TOP_EDGE|WITHIN_WORD_UPWARDS ; 
+		int sameDirectionMask = isAcross ? IN_ACROSS : IN_DOWN ; 
+		long letterBits = 0, inWordBits = 0, edgeBits = 0 ; 
+		for (int cell=0, index=isAcross ? cellIndex(line, 0) : cellIndex(0, line) ; cell<=lineLength ; cell++, index+=step) { // The spare cell past the end has the closing edge. 
+			int cellFlags = flags[index] ; 
+			if (letters[index]!=space) letterBits |= 1L<<cell ; 
+			if ((cellFlags&sameDirectionMask)!=0) inWordBits |= 1L<<cell ; 
+			if ((cellFlags&edgeMask)!=0) edgeBits |= 1L<<cell ; 
+		}
+		int maskIndex = lineMaskIndex(isAcross ? line : rowCount+line, LINE_LETTERS) ; 
+		lineMasks[maskIndex+LINE_LETTERS] = letterBits ; 
+		lineMasks[maskIndex+LINE_IN_WORD] = inWordBits ; 
+		lineMasks[maskIndex+LINE_EDGES] = edgeBits ; 
+	}
+	
+	/**
+	 * Adds a word which has just been placed to the masks: to all of its own line's, and to the letters of the lines crossing it. 
+	 * {@link #unplaceWord()} puts them back from the undo-log. 
+	 */
+	private void addToLineMasks(int row, int column, boolean isAcross, int wordLength) { 
+		int line = isAcross ? row : rowCount+column ; 
+		int start = isAcross ? column : row ; 
+		int maskIndex = lineMaskIndex(line, LINE_LETTERS) ; 
+		long span = ((1L<<wordLength) - 1) << start ; 
+		lineMasks[maskIndex+LINE_LETTERS] |= span ; 
+		lineMasks[maskIndex+LINE_IN_WORD] |= span ; 
+		lineMasks[maskIndex+LINE_EDGES] |= span | (1L<<(start+wordLength)) ; // Within-word flags, and the edges at each end. 
+		int firstCrossingLine = isAcross ? rowCount+column : row ; 
+		long crossingBit = 1L<<(isAcross ? row : column) ; 
+		for (int x=0 ; x<wordLength ; x++) lineMasks[lineMaskIndex(firstCrossingLine+x, LINE_LETTERS)] |= crossingBit ; 
+	}
+	
+	/**
+	 * For each letter (as a simple ASCII code), which letters of the word it is, counting back from the last: 
+	 * bit (wordLength-1-x) is set in the mask of the word's letter x. 
+	 * Shifted to the first start whose word covers a cell, the mask of the cell's letter is then the starts which put that letter there. 
+	 * Only meaningful for words no longer than {@link #maxBatchedLineLength}. 
+	 */
+	static long [] makeLetterMasks(String word) { 
+		long [] letterMasks = new long[128] ; 
+		int wordLength = word.length(); 
+		for (int x=0 ; x<wordLength ; x++) { 
+			char ch = word.charAt(x); 
+			if (ch<128) letterMasks[ch] |= 1L<<(wordLength-1-x) ; 
+		}
+		return letterMasks ; 
+	}
+	
+	/**
+	 * Shifts left by the distance, or right if it is negative. 
+	 */
+	private static long shiftLeft(long bits, int distance) { 
+		return (distance>=0) ? bits<<distance : bits>>>-distance ; 
+	}
+	
 	/**
 	 * Places a word in the grid, checking that it doesn't clash with existing words. 
 	 * It is assumed to already be capitalized. 
@@ -338,12 +654,12 @@ public class Grid {
 	 * @param column Column of first letter
 	 */
 	PlacedWord placeWord(String word, int row, int column, boolean isAcross)  { 
-		if (placedWordSet.contains(word)) System.err.println("Placing duplicate word '"+word+"' at "+row+","+column+" at "+Str.currentStack()); 
+		int wordId = builder.buildInfoAtStart.getWordId(word); 
+		boolean wasAlreadyPlaced = isWordPlaced(word, wordId); 
+		if (wasAlreadyPlaced) System.err.println("Placing duplicate word '"+word+"' at "+row+","+column+" at "+Str.currentStack()); 
 		this.signature = null ; 
 //		System.out.println("Placing:  "+word);
 		int wordLength = word.length();
-		int iDelta = isAcross ? 0 : 1 ; 
-		int jDelta = isAcross ? 1 : 0 ; 
 		//////  Do checks 
 		if (0>row || row>=rowCount) throw new RuntimeException("Row "+row+" is outside grid."); 
 		if (0>column || column>=columnCount) throw new RuntimeException("Column "+column+" is outside grid."); 
@@ -352,69 +668,155 @@ public class Grid {
 		} else { 
 			if (row+wordLength>rowCount) throw new RuntimeException("End column "+(row+wordLength)+" is outside grid: '"+word+"' at "+row+","+column+(isAcross?"A":"D"));  
 		}
-		for (int x=0 ; x<wordLength ; x++) { 
+		int step = isAcross ? 1 : stride ; 
+		int edgeMask = isAcross ? HARD_LEFT_EDGE|WITHIN_WORD_LEFTWARDS : HARD_TOP_EDGE|WITHIN_WORD_UPWARDS ; 
+		int sameDirectionMask = isAcross ? IN_ACROSS : IN_DOWN ; 
+		int startIndex = cellIndex(row, column) ; 
+		for (int x=0, index=startIndex ; x<wordLength ; x++, index+=step) { 
 			char wordCh = word.charAt(x); 
-			int i = row+x*iDelta;
-			int j = column+x*jDelta;
-			Cell cell = rows[i][j]; 
-			char cellCh = cell.ch ; 
-			if (x>0) { 
-				if (isAcross) { 
-					if (rowHardLeftEdges[i][j]) throw new RuntimeException("Overlaps with existing word."); 
-					if (rowWithinWordLeftwards[i][j]) throw new RuntimeException("Overlaps with existing word."); 
-				} else { 
-					if (columnHardTopEdges[j][i]) throw new RuntimeException("Overlaps with existing word."); 
-					if (columnWithinWordUpwards[j][i]) throw new RuntimeException("Overlaps with existing word."); 
-				} 
-			}
+			if (wordCh>=128) throw new RuntimeException("Word '"+word+"' has a letter which is not simple ASCII."); 
+			int cellFlags = flags[index] ; 
+			char cellCh = (char) letters[index] ; 
+			if (x>0 && (cellFlags&edgeMask)!=0) throw new RuntimeException("Overlaps with existing word."); 
 			if (cellCh!=space) { 
 				if (cellCh!=wordCh) throw new RuntimeException("Word '"+word+"'["+x+"] '"+wordCh+"' clashes with grid letter '"+cellCh+"'"); 
 			}
+			if ((cellFlags&sameDirectionMask)!=0) throw new RuntimeException(isAcross ? "Already have an across letter." : "Already have a down letter."); 
+		}
+		//////  Record undo information 
+		UndoEntry undoEntry = new UndoEntry(this, startIndex, step, wordLength+1); 
+		undoEntry.wordId = wordId ; 
+		undoEntry.wasAlreadyPlaced = wasAlreadyPlaced ; 
+		if (lineMasks!=null) { 
+			int maskIndex = lineMaskIndex(isAcross ? row : rowCount+column, LINE_LETTERS) ; 
+			undoEntry.savedLineLetters = lineMasks[maskIndex+LINE_LETTERS] ; 
+			undoEntry.savedLineInWord = lineMasks[maskIndex+LINE_IN_WORD] ; 
+			undoEntry.savedLineEdges = lineMasks[maskIndex+LINE_EDGES] ; 
 		}
 		//////  Add word 
-		for (int x=0 ; x<wordLength ; x++) { 
+		int withinWordFlag = isAcross ? WITHIN_WORD_LEFTWARDS : WITHIN_WORD_UPWARDS ; 
+		int directionCode = isAcross ? zobristAcrossCode : zobristDownCode ; 
+		for (int x=0, index=startIndex ; x<wordLength ; x++, index+=step) { 
 			char wordCh = word.charAt(x); 
-			int i = row+x*iDelta;
-			int j = column+x*jDelta;
-			Cell cell = rows[i][j]; 
-			cell.setChar(wordCh, isAcross); 
-			if (x>0) { 
-				if (isAcross) { 
-					rowWithinWordLeftwards[i][j] = true ; 
-				} else { 
-					columnWithinWordUpwards[j][i] = true ; 
-				} 
-			}
-		} 
-		if (isAcross) { 
-			rowHardLeftEdges[row][column] = true ; 
-			rowHardLeftEdges[row][column+wordLength] = true ; 
-		} else { 
-			columnHardTopEdges[column][row] = true ; 
-			columnHardTopEdges[column][row+wordLength] = true ; 
+			if (letters[index]==space) signatureHash ^= zobristKey(index, wordCh); 
+			signatureHash ^= zobristKey(index, directionCode); 
+			letters[index] = (byte) wordCh ; 
+			flags[index] |= sameDirectionMask ; 
+			if (x>0) flags[index] |= withinWordFlag ; 
 		} 
+		int hardEdgeFlag = isAcross ? HARD_LEFT_EDGE : HARD_TOP_EDGE ; 
+		flags[startIndex] |= hardEdgeFlag ; 
+		flags[startIndex+wordLength*step] |= hardEdgeFlag ; 
 		PlacedWord placedWord = new PlacedWord(word, row, column, isAcross, isPuzzleBuilding);
 		placedWordList.add(placedWord); 
-		placedWordSet.add(word); 
-		if (pendingWords!=null) pendingWords.remove(word); 
+		if (!wasAlreadyPlaced) setWordPlaced(word, wordId, true); 
+		this.pendingWords = null ; 
+		this.longestGapLength = null ; 
+		this.tally = null ; 
+		this.crossableCells = null ; 
+		if (freeRightwards!=null) updateFreeRuns(row, column, isAcross); 
+		if (lineMasks!=null) addToLineMasks(row, column, isAcross, wordLength); 
+		if (undoLog==null) undoLog = new ArrayList<UndoEntry>(); 
+		undoLog.add(undoEntry); 
 //		this.lastWord = word ; 
 		return placedWord ; 
 	}
 	
+	/**
+	 * Reverses the most recent {@link #placeWord(String, int, int, boolean)} on this grid instance. 
+	 * Cells, word lists and cached lengths are returned to how they were. 
+	 * The quality is not touched ; it was not changed by placing the word either. 
+	 */
+	void unplaceWord() { 
+		if (undoLog==null || undoLog.isEmpty()) throw new IllegalStateException("No word has been placed in this grid instance."); 
+		UndoEntry undoEntry = undoLog.remove(undoLog.size()-1); 
+		//////  Restore cells 
+		for (int x=0, index=undoEntry.startIndex ; x<undoEntry.savedLetters.length ; x++, index+=undoEntry.step) { 
+			letters[index] = undoEntry.savedLetters[x] ; 
+			flags[index] = undoEntry.savedFlags[x] ; 
+		}
+		//////  Restore word lists 
+		PlacedWord placedWord = placedWordList.remove(placedWordList.size()-1); 
+		if (!undoEntry.wasAlreadyPlaced) setWordPlaced(placedWord.word, undoEntry.wordId, false); 
+		this.pendingWords = undoEntry.pendingWords ; 
+		//////  Restore cached values 
+		this.signature = undoEntry.signature ; 
+		this.signatureHash = undoEntry.signatureHash ; 
+		this.longestGapLength = undoEntry.longestGapLength ; 
+		if (tally!=null && !tally.isShared) spareTally = tally ; 
+		this.tally = undoEntry.tally ; 
+		this.crossableCells = undoEntry.crossableCells ; 
+		if (freeRightwards!=null) updateFreeRuns(placedWord.row, placedWord.column, placedWord.isAcross); 
+		if (lineMasks!=null) { 
+			int maskIndex = lineMaskIndex(placedWord.isAcross ? placedWord.row : rowCount+placedWord.column, LINE_LETTERS) ; 
+			lineMasks[maskIndex+LINE_LETTERS] = undoEntry.savedLineLetters ; 
+			lineMasks[maskIndex+LINE_IN_WORD] = undoEntry.savedLineInWord ; 
+			lineMasks[maskIndex+LINE_EDGES] = undoEntry.savedLineEdges ; 
+			int firstCrossingLine = placedWord.isAcross ? rowCount+placedWord.column : placedWord.row ; 
+			long crossingBit = 1L<<(placedWord.isAcross ? placedWord.row : placedWord.column) ; 
+			for (int x=0 ; x<undoEntry.savedLetters.length-1 ; x++) { 
+				if (undoEntry.savedLetters[x]==space) lineMasks[lineMaskIndex(firstCrossingLine+x, LINE_LETTERS)] &= ~crossingBit ; 
+			}
+		}
+	}
+	
+	/**
+	 * What {@link #unplaceWord()} needs to reverse one call to {@link #placeWord(String, int, int, boolean)}. 
+	 */
+	private static class UndoEntry { 
+		final int startIndex ; 
+		final int step ; 
+		final byte [] savedLetters ; // The word's cells, plus the cell after the end (its edge-flag changes). 
+		final byte [] savedFlags ; 
+		final String signature ; 
+		final long signatureHash ; 
+		final List<String> pendingWords ; 
+		final Integer longestGapLength ; 
+		final GridTally tally ; 
+		final CrossableCells crossableCells ; 
+		long savedLineLetters, savedLineInWord, savedLineEdges ; // The masks of the word's line, if the grid keeps them. 
+		int wordId ; 
+		boolean wasAlreadyPlaced ; 
+		UndoEntry(Grid grid, int startIndex, int step, int cellCount) { 
+			this.startIndex = startIndex ; 
+			this.step = step ; 
+			this.savedLetters = new byte[cellCount] ; 
+			this.savedFlags = new byte[cellCount] ; 
+			for (int x=0, index=startIndex ; x<cellCount ; x++, index+=step) { 
+				savedLetters[x] = grid.letters[index] ; 
+				savedFlags[x] = grid.flags[index] ; 
+			}
+			this.signature = grid.signature ; 
+			this.signatureHash = grid.signatureHash ; 
+			this.pendingWords = grid.pendingWords ; 
+			this.longestGapLength = grid.longestGapLength ; 
+			this.tally = grid.tally ; 
+			this.crossableCells = grid.crossableCells ; 
+		}
+	}
+	
 	public void placeWord(String word, Loc loc)  { 
 		placeWord(word, loc.row, loc.column, loc.isAcross); 
 	}
 
+	/**
+	 * The full signature of the grid, as a string. 
+	 * Two grids have the same signature if they have the same letters in the same cells, running the same directions. 
+	 * <p>
+	 * This is slow, and is kept for checking {@link #getSignatureHash()}. 
+	 */
 	Object getSignature() { 
 		if (signature==null) { 
 			StringBuffer sb = new StringBuffer(); 
-			for (Cell[] row : rows) { 
-				for (Cell cell : row) { 
-					char ch = cell.ch;
+			for (int i=0 ; i<rowCount ; i++) { 
+				for (int j=0 ; j<columnCount ; j++) { 
+					int index = cellIndex(i, j) ; 
+					char ch = (char) letters[index] ;
 					sb.append(ch); 
-					if (ch!=Cell.space) { 
-						if (cell.isInAcross) 
-							if (cell.isInDown) sb.append('+'); 
+					if (ch!=space) { 
+						int cellFlags = flags[index] ; 
+						if ((cellFlags&IN_ACROSS)!=0) 
+							if ((cellFlags&IN_DOWN)!=0) sb.append('+'); 
 							else sb.append('-'); 
 						else sb.append('|'); 
 					}
@@ -426,46 +828,82 @@ public class Grid {
 	}
 
 	/**
-	 * Sets the {@link #pendingWords} field with all unused words. 
+	 * A hash of {@link #getSignature()}. Cheap, since it is kept up to date as words are placed. 
 	 */
-	public void setPendingWords() { 
-		/*
-		 * (October 2020) I think this could be simpler. But it works and doesn't chew up a lot of runtime. 
-		 */
-		Grid.StringSet [] unusedWordsByLength ; 
-//		PdfClueless.profiler.enterModule();
-		StringList[] wordsByLength = builder.buildInfoAtStart.wordsByLength;
-		int longestWordLength = wordsByLength.length - 1 ; // First element is 0-length "words". 
-		Set<String> usedWords = new HashSet<String>() ; 
-		for (PlacedWord placedWord : placedWordList) { 
-			usedWords.add(placedWord.word); 
-		}
-		unusedWordsByLength = new Grid.StringSet[longestWordLength+1] ; 
-		for (int i=1 ; i<=longestWordLength ; i++) { 
-			Grid.StringSet wordSet = new Grid.StringSet(wordsByLength[i]);
-			wordSet.removeAll(usedWords); 
-			unusedWordsByLength[i] = wordSet; 
-		}
-		this.pendingWords = new ArrayList<String>(); 
-		for (int i=1 ; i<=longestWordLength ; i++) { 
-			pendingWords.addAll(unusedWordsByLength[i]); 
+	long getSignatureHash() { 
+		return signatureHash ; 
+	}
+	
+	/**
+	 * The random-looking key for a cell's letter or direction. 
+	 * It is a pure function (SplitMix64 finaliser) of its arguments, so grids of the same size share keys without a table. 
+	 * 
+	 * @param code The letter, or {@link #zobristAcrossCode} or {@link #zobristDownCode}. 
+	 */
+	private static long zobristKey(int cellIndex, int code) { 
+		long z = (cellIndex * (long) zobristCodeCount + code + 1) * 0x9E3779B97F4A7C15L ; 
+		z = (z ^ (z>>>30)) * 0xBF58476D1CE4E5B9L ; 
+		z = (z ^ (z>>>27)) * 0x94D049BB133111EBL ; 
+		return z ^ (z>>>31) ; 
+	}
+
+	/**
+	 * Whether the word is placed in the grid, either as a puzzle word or a coat word. 
+	 */
+	public boolean isWordPlaced(String word) { 
+		return isWordPlaced(word, builder.buildInfoAtStart.getWordId(word)); 
+	}
+	
+	/**
+	 * @param wordId The word's id from {@link BuildInfo#getWordId(String)}. 
+	 */
+	private boolean isWordPlaced(String word, int wordId) { 
+		if (wordId>=0) return (placedPuzzleWords[wordId>>>6] & (1L<<wordId)) != 0 ; 
+		return placedOtherWords!=null && placedOtherWords.contains(word); 
+	}
+	
+	private void setWordPlaced(String word, int wordId, boolean isPlaced) { 
+		if (wordId>=0) { 
+			if (isPlaced) placedPuzzleWords[wordId>>>6] |= 1L<<wordId ; 
+			else placedPuzzleWords[wordId>>>6] &= ~(1L<<wordId) ; 
+		} else if (isPlaced) { 
+			if (placedOtherWords==null) placedOtherWords = new HashSet<String>(); 
+			placedOtherWords.add(word); 
+		} else { 
+			placedOtherWords.remove(word); 
 		}
 	}
 	
+	/**
+	 * Returns the puzzle words not yet placed in the grid, shortest first. The list can't be changed. 
+	 */
 	public List<String> getPendingWords() { 
-		if (pendingWords==null) setPendingWords();
+		if (pendingWords==null) { 
+			String [] wordsById = builder.buildInfoAtStart.wordsById ; 
+			List<String> list = new ArrayList<String>(); 
+			for (int i=0 ; i<placedPuzzleWords.length ; i++) { 
+				long pendingBits = ~placedPuzzleWords[i] ; 
+				while (pendingBits!=0) { 
+					int id = i*64 + Long.numberOfTrailingZeros(pendingBits) ; 
+					if (id>=wordsById.length) break ; 
+					list.add(wordsById[id]); 
+					pendingBits &= pendingBits-1 ; 
+				}
+			}
+			this.pendingWords = Collections.unmodifiableList(list); 
+		}
 		return pendingWords ; 
 	}
 	
 	int getLongestGapLength() { 
 		if (longestGapLength==null) { 
 			int longestSoFar = 0 ; 
-			for (Cell [] row : rows) { 
-				int longestHere = getLongestGapLength(row); 
+			for (int i=0 ; i<rowCount ; i++) { 
+				int longestHere = getLongestGapLength(cellIndex(i, 0), 1, columnCount); 
 				if (longestHere>longestSoFar) longestSoFar = longestHere ; 
 			}
-			for (Cell [] column : columns) { 
-				int longestHere = getLongestGapLength(column); 
+			for (int j=0 ; j<columnCount ; j++) { 
+				int longestHere = getLongestGapLength(cellIndex(0, j), stride, rowCount); 
 				if (longestHere>longestSoFar) longestSoFar = longestHere ; 
 			}
 			longestGapLength = longestSoFar ; 
@@ -473,10 +911,15 @@ public class Grid {
 		return longestGapLength ; 
 	}
 	
-	private static int getLongestGapLength(Cell [] line) { 
+	/**
+	 * Longest run of empty cells along a row or column. 
+	 * 
+	 * @param start Cell-index of first cell in the line. 
+	 * @param step One for a row, {@link #stride} for a column. 
+	 */
+	int getLongestGapLength(int start, int step, int lineLength) { 
 		int tmp = 0 ; 
-		int lineLength = line.length;
-		while (tmp<lineLength && line[tmp].hasLetter()) tmp ++ ; 
+		while (tmp<lineLength && hasLetterAt(start+tmp*step)) tmp ++ ; 
 		if (tmp==lineLength) return 0 ; // There is no gap on this line. 
 		int longestSoFar = 0 ; 
 		int gapFirst = tmp ; 
@@ -484,32 +927,147 @@ public class Grid {
 			/* Here we know: gapFirst is the start of a gap. */
 			//////  Find end of gap 
 			tmp = gapFirst + 1 ; 
-			while (tmp<lineLength && !line[tmp].hasLetter()) tmp ++ ;  
+			while (tmp<lineLength && !hasLetterAt(start+tmp*step)) tmp ++ ;  
 			/* Here we know: tmp is the fist index past the end of the gap (either a letter, or past the end of the line). */
 			//////  Accumulate statistics
 			int gapLength = tmp - gapFirst ; 
 			if (gapLength>longestSoFar) longestSoFar = gapLength ; 
 			//////  Advance for next iteration
-			while (tmp<lineLength && line[tmp].hasLetter()) tmp ++ ; 
+			while (tmp<lineLength && hasLetterAt(start+tmp*step)) tmp ++ ; 
 			gapFirst = tmp ; 
 		}
 		return longestSoFar ; 
 	}
 	
-	int getLongestPendingLength() { 
-		if (longestPendingLength==null) { 
-			if (pendingWords==null) setPendingWords();
-			if (pendingWords.isEmpty()) { 
-				this.longestPendingLength = 0 ; 
+	/**
+	 * Index of the cells which could be crossed by a new word. 
+	 */
+	CrossableCells getCrossableCells() { 
+		if (crossableCells==null) crossableCells = new CrossableCells(this); 
+		return crossableCells ; 
+	}
+	
+	/**
+	 * Starts keeping tables of free runs, so {@link #getFreeRunRightwards(int, int)} etc don't walk the grid. 
+	 * They are then updated by every placement in this grid, and copied with it. 
+	 * Copying costs a little more, so this is only worth it where free runs are asked for often (eg, coating). 
+	 */
+	void keepFreeRuns() { 
+		if (freeRightwards!=null) return ; 
+		int cellSlotCount = getCellSlotCount(); 
+		this.freeRightwards = new byte[cellSlotCount] ; 
+		this.freeLeftwards = new byte[cellSlotCount] ; 
+		this.freeDownwards = new byte[cellSlotCount] ; 
+		this.freeUpwards = new byte[cellSlotCount] ; 
+		for (int row=0 ; row<rowCount ; row++) updateFreeRuns(cellIndex(row, 0), 1, columnCount, IN_ACROSS, freeRightwards, freeLeftwards); 
+		for (int column=0 ; column<columnCount ; column++) updateFreeRuns(cellIndex(0, column), stride, rowCount, IN_DOWN, freeDownwards, freeUpwards); 
+	}
+	
+	/**
+	 * Recomputes the free runs along the line of a word which has just been placed or unplaced. 
+	 * Only that line changes: the word only changes which cells are in words of its own direction. 
+	 */
+	private void updateFreeRuns(int row, int column, boolean isAcross) { 
+		if (isAcross) { 
+			updateFreeRuns(cellIndex(row, 0), 1, columnCount, IN_ACROSS, freeRightwards, freeLeftwards); 
+		} else { 
+			updateFreeRuns(cellIndex(0, column), stride, rowCount, IN_DOWN, freeDownwards, freeUpwards); 
+		}
+	}
+	
+	private void updateFreeRuns(int start, int step, int lineLength, int directionMask, byte [] forwards, byte [] backwards) { 
+		int run = 0 ; 
+		for (int x=lineLength-1, index=start+x*step ; x>=0 ; x--, index-=step) { 
+			forwards[index] = (byte) run ; 
+			run = ((flags[index]&directionMask)!=0) ? 0 : run+1 ; 
+		}
+		run = 0 ; 
+		for (int x=0, index=start ; x<lineLength ; x++, index+=step) { 
+			backwards[index] = (byte) run ; 
+			run = ((flags[index]&directionMask)!=0) ? 0 : run+1 ; 
+		}
+	}
+	
+	/**
+	 * How many cells to the right of the given cell can be covered by an across-word. 
+	 * That is, the cells up to the edge of the grid, or the first cell in an across-word. 
+	 */
+	int getFreeRunRightwards(int row, int startColumn) { 
+		if (freeRightwards!=null) return freeRightwards[cellIndex(row, startColumn)] ; 
+		int column = startColumn + 1 ; 
+		while (column<columnCount && !isInAcross(row, column)) column ++ ; 
+		return column - startColumn - 1 ; 
+	}
+	
+	/**
+	 * How many cells to the left of the given cell can be covered by an across-word. 
+	 */
+	int getFreeRunLeftwards(int row, int startColumn) { 
+		if (freeLeftwards!=null) return freeLeftwards[cellIndex(row, startColumn)] ; 
+		int column = startColumn - 1 ; 
+		while (column>=0 && !isInAcross(row, column)) column -- ; 
+		return startColumn - column - 1 ; 
+	}
+	
+	/**
+	 * How many cells below the given cell can be covered by a down-word. 
+	 */
+	int getFreeRunDownwards(int startRow, int column) { 
+		if (freeDownwards!=null) return freeDownwards[cellIndex(startRow, column)] ; 
+		int row = startRow + 1 ; 
+		while (row<rowCount && !isInDown(row, column)) row ++ ; 
+		return row - startRow - 1 ; 
+	}
+	
+	/**
+	 * How many cells above the given cell can be covered by a down-word. 
+	 */
+	int getFreeRunUpwards(int startRow, int column) { 
+		if (freeUpwards!=null) return freeUpwards[cellIndex(startRow, column)] ; 
+		int row = startRow - 1 ; 
+		while (row>=0 && !isInDown(row, column)) row -- ; 
+		return startRow - row - 1 ; 
+	}
+	
+	/**
+	 * Number of entries in the cell arrays, including the spare column and row. 
+	 * Cell-indices are less than this. 
+	 */
+	int getCellSlotCount() { 
+		return letters.length ; 
+	}
+	
+	/**
+	 * The grid's {@link GridTally}. 
+	 * If the grid's last word was placed in this instance, and the tally from before it was placed is known, 
+	 * the tally is computed from that one. Otherwise the whole grid is scanned. 
+	 */
+	GridTally getTally() { 
+		if (tally==null) { 
+			GridTally previousTally = (undoLog==null || undoLog.isEmpty()) ? null : undoLog.get(undoLog.size()-1).tally ; 
+			if (previousTally!=null) { 
+				this.tally = GridTally.afterPlacement(previousTally, this, spareTally); 
+				if (tally==spareTally) spareTally = null ; 
 			} else { 
-				this.longestPendingLength = pendingWords.get(pendingWords.size()-1).length(); 
+				this.tally = GridTally.scan(this); 
 			}
 		}
-		return longestPendingLength ; 
+		return tally ; 
 	}
 	
-	void destroyPendingWords() { 
-		this.pendingWords = null ; 
+	/**
+	 * Length of the longest puzzle word not yet placed, or zero if they all are. 
+	 * Ids are in length order, so this is the length of the highest id whose bit is clear. 
+	 */
+	int getLongestPendingLength() { 
+		String [] wordsById = builder.buildInfoAtStart.wordsById ; 
+		for (int i=placedPuzzleWords.length-1 ; i>=0 ; i--) { 
+			long pendingBits = ~placedPuzzleWords[i] ; 
+			int idsInLong = wordsById.length - i*64 ; 
+			if (idsInLong<64) pendingBits &= (1L<<idsInLong) - 1 ; 
+			if (pendingBits!=0) return wordsById[i*64 + 63 - Long.numberOfLeadingZeros(pendingBits)].length(); 
+		}
+		return 0 ; 
 	}
 	
 	/**
@@ -573,24 +1131,86 @@ public class Grid {
 	 */
 	void addChild(Grid child, QualityMeasure qualityMeasure) { 
 		child.setQuality(qualityMeasure);
-		double childQuality = child.getQuality(); 
-		if (next2!=null) { 
+		addChild(child, child.getQuality()); 
+	}
+
+	/**
+	 * @param child The child grid, or null if it is not wanted even if it is one of the best two. 
+	 */
+	private void addChild(Grid child, double childQuality) { 
+		if (hasNext2) { 
 			/* Currently have a best & second best child grids. */
-			if (childQuality>next2.quality) { 
-				if (childQuality>next1.quality) { 
+			if (childQuality>next2Quality) { 
+				if (childQuality>next1Quality) { 
 					this.next2 = next1 ; 
+					this.next2Quality = next1Quality ; 
 					this.next1 = child ; 
+					this.next1Quality = childQuality ; 
 				} else { 
 					this.next2 = child ; 
+					this.next2Quality = childQuality ; 
 				}
 			}
-		} else if (next1!=null) { 
+		} else if (hasNext1) { 
 			/* Currently have only one child grid. */
 			this.next2 = child ; 
+			this.next2Quality = childQuality ; 
+			this.hasNext2 = true ; 
 		} else { 
 			/* Currently have no child grid. */ 
 			this.next1 = child ; 
+			this.next1Quality = childQuality ; 
+			this.hasNext1 = true ; 
+		}
+	}
+
+	/**
+	 * Like {@link #addChild(Grid, QualityMeasure)}, for a word which has just been placed in this grid itself. 
+	 * The placement is scored in place, and this grid is only copied if the copy would be kept as {@link #next1} or {@link #next2}. 
+	 * Most placements are not kept, so this saves most of the copying. 
+	 * <p>
+	 * The caller should call {@link #unplaceWord()} afterwards. 
+	 * 
+	 * @param minQuality A placement of lower quality is not copied, because it is not wanted anyway (eg, it is below the threshold of the list the child goes to). 
+	 * It is still recorded as a child, with a null grid. 
+	 */
+	void addPlacementAsChild(QualityMeasure qualityMeasure, double minQuality) { 
+		addPlacementAsChild(qualityMeasure, minQuality, null); 
+	}
+
+	/**
+	 * Like {@link #addPlacementAsChild(QualityMeasure, double)}, but reusing grids rather than making new ones, if there is a pool. 
+	 * The child it displaces, which nothing else refers to yet, is made into the copy ; otherwise the pool makes it. 
+	 */
+	void addPlacementAsChild(QualityMeasure qualityMeasure, double minQuality, GridPool gridPool) { 
+		double childQuality = qualityMeasure.computeQuality(this); 
+		if (hasNext2 && childQuality<=next2Quality) return ; // Would not be one of the best two children. 
+		Grid child = null ; 
+		if (childQuality>=minQuality) { 
+			if (gridPool==null) { 
+				child = copy(); 
+			} else if (hasNext2 && next2!=null) { 
+				child = next2 ; // Displaced by this child, whichever place it takes. 
+				child.copyFrom(this); 
+			} else { 
+				child = gridPool.copyOf(this); 
+			}
+			child.quality = childQuality ; 
+			child.currentQualityMeasure = qualityMeasure ; 
 		}
+		addChild(child, childQuality); 
+	}
+
+	/**
+	 * Whether a placement of at most the given quality could still be recorded by {@link #addPlacementAsChild(QualityMeasure, double)}. 
+	 * If not, there is no point placing it and scoring it. 
+	 * <p>
+	 * Only placements which {@link #addPlacementAsChild(QualityMeasure, double)} would ignore are unwanted. 
+	 * A placement below the list's threshold is still recorded (with a null grid), and takes part in choosing later children, 
+	 * so it can't be skipped without changing which children are chosen. 
+	 */
+	boolean isChildWanted(double maxChildQuality) { 
+		return !(hasNext2 && maxChildQuality<=next2Quality) ; 
 	}
 
 	void setQuality(QualityMeasure qualityMeasure) { 
@@ -600,6 +1220,22 @@ public class Grid {
 		}
 	}
 
+	/**
+	 * Sets the quality the measure has already computed for this grid, eg when the placement was scored before the grid was copied. 
+	 */
+	void setQuality(QualityMeasure qualityMeasure, double quality) { 
+		this.quality = quality ; 
+		this.currentQualityMeasure = qualityMeasure ; 
+	}
+
+	/**
+	 * Sets the quality as it was when the grid was built, for a grid rebuilt from a {@link ResultCache} entry. 
+	 */
+	void setQuality(double quality) { 
+		this.quality = quality ; 
+		this.currentQualityMeasure = null ; 
+	}
+
 	public double getQuality() {
 		return quality;
 	}
@@ -612,15 +1248,166 @@ public class Grid {
 
 	public void notePuzzleWordsDone() {
 		this.isPuzzleBuilding = false ; 
-		for (Cell[] row : this.rows) { 
-			for (Cell cell : row) { 
-				if (cell.hasLetter()) cell.isPuzzleCell = true ; 
-			}
+		for (int index=0 ; index<letters.length ; index++) { 
+			if (letters[index]!=space) flags[index] |= PUZZLE_CELL ; 
 		}
 	}
 
 	public void writeRow_sysout(int row) { 
-		for (int column=0 ; column<columnCount ; column++) System.out.print(rows[row][column].ch);
+		for (int column=0 ; column<columnCount ; column++) System.out.print(getChar(row, column));
+	}
+
+	//////  Tests 
+
+	/**
+	 * Checks the bit-parallel {@link #getPlaceableStarts(String, long[], int, boolean)} against {@link #isWordPlaceable(String, int, int, boolean)}, a start at a time, 
+	 * on grids of random words, which have been placed, unplaced and copied. 
+	 * <p>
+	 * Also checks the {@link #lineMasks} those rely on: that they match the masks recomputed from the cells, 
+	 * and that each start's check from the masks agrees with the check from the {@link #flags} and {@link #letters}. 
+	 */
+	public static class ClassTest { 
+		
+		/**
+		 * Few letters, so words often cross and clash. 
+		 */
+		private static final String testLetters = "ABCD" ; 
+		
+		private final Random random = new Random(20201030L); 
+		
+		public ClassTest() { 
+			boolean wasPrintingProgress = Builder.isPrintingProgress ; 
+			Builder.isPrintingProgress = false ; 
+			try { 
+				testGrids(9, 9, 300); 
+				testGrids(7, 12, 300); 
+				testGrids(1, 5, 100); 
+				testGrids(maxBatchedLineLength, maxBatchedLineLength, 20); // Lines fill the longs, with the edge past the end in the top bit. 
+			} finally { 
+				Builder.isPrintingProgress = wasPrintingProgress ; 
+			}
+			//////  Passed! Bye bye.  
+			System.out.println("Passed test suite "+this.getClass().getCanonicalName()); 
+		}
+		
+		private void testGrids(int rowCount, int columnCount, int gridCount) { 
+			Builder builder = makeBuilder(rowCount, columnCount); 
+			Grid spareGrid = new Grid(builder); 
+			for (int i=0 ; i<gridCount ; i++) { 
+				Grid grid = new Grid(builder); 
+				int placedSinceCopy = 0 ; // Only these can be unplaced: a copy has no undo log. 
+				int stepCount = random.nextInt(4*(rowCount+columnCount)); 
+				for (int step=0 ; step<stepCount ; step++) { 
+					int action = random.nextInt(10); 
+					if (action<7) { 
+						String word = makeRandomWord(Math.min(Math.max(rowCount, columnCount), 12)); 
+						int row = random.nextInt(rowCount); 
+						int column = random.nextInt(columnCount); 
+						boolean isAcross = random.nextBoolean(); 
+						if (!grid.isWordPlaceable(word, row, column, isAcross) || grid.isWordPlaced(word)) continue ; 
+						grid.placeWord(word, row, column, isAcross); 
+						placedSinceCopy ++ ; 
+					} else if (action<9) { 
+						if (placedSinceCopy==0) continue ; 
+						grid.unplaceWord(); 
+						placedSinceCopy -- ; 
+					} else { 
+						if (random.nextBoolean()) { 
+							grid = grid.copy(); 
+						} else { 
+							spareGrid.copyFrom(grid); 
+							Grid oldGrid = grid ; 
+							grid = spareGrid ; 
+							spareGrid = oldGrid ; 
+						}
+						placedSinceCopy = 0 ; 
+					}
+					checkLineMasks(grid); 
+				}
+				checkGrid(grid); 
+			}
+		}
+		
+		private void checkGrid(Grid grid) { 
+			int maxLength = Math.max(grid.rowCount, grid.columnCount) ; 
+			for (int i=0 ; i<20 ; i++) { 
+				String word ; 
+				if (i%2==0 && !grid.placedWordList.isEmpty()) { 
+					/* A placed word, maybe with a letter more or less: fits its own letters, but not their direction or edges. */
+					word = grid.placedWordList.get(random.nextInt(grid.placedWordList.size())).word ; 
+					if (random.nextBoolean()) word = random.nextBoolean() ? word+makeRandomWord(1) : makeRandomWord(1)+word ; 
+				} else { 
+					word = makeRandomWord(maxLength+1); 
+				}
+				checkPlaceableStarts(grid, word); 
+			}
+		}
+		
+		private void checkPlaceableStarts(Grid grid, String word) { 
+			long [] letterMasks = makeLetterMasks(word); 
+			for (boolean isAcross : new boolean[] {true, false}) { 
+				int lineCount = isAcross ? grid.rowCount : grid.columnCount ; 
+				int lineLength = isAcross ? grid.columnCount : grid.rowCount ; 
+				for (int line=0 ; line<lineCount ; line++) { 
+					long placeableStarts = grid.getPlaceableStarts(word, letterMasks, line, isAcross); 
+					long expectedStarts = 0 ; 
+					for (int start=0 ; start<lineLength ; start++) { 
+						int row = isAcross ? line : start ; 
+						int column = isAcross ? start : line ; 
+						boolean isPlaceable = grid.isWordPlaceable(word, row, column, isAcross); 
+						if (isPlaceable) expectedStarts |= 1L<<start ; 
+						boolean isInGrid = start+word.length()<=lineLength ; 
+						if (isInGrid && isPlaceable!=grid.isWordPlaceableByFlags(word, grid.cellIndex(row, column), isAcross)) { 
+							throw new RuntimeException("Masks and flags disagree whether '"+word+"' can go at "+row+","+column+(isAcross?"A":"D")); 
+						}
+					}
+					if (placeableStarts!=expectedStarts) { 
+						throw new RuntimeException("Placeable starts of '"+word+"' "+(isAcross?"across row ":"down column ")+line+" are "+Long.toBinaryString(placeableStarts)+", expected "+Long.toBinaryString(expectedStarts)); 
+					}
+				}
+			}
+		}
+		
+		/**
+		 * Checks the masks, kept up to date by each placement and unplacement, and copied with the grid, are the same as if made from the cells. 
+		 */
+		private void checkLineMasks(Grid grid) { 
+			long [] keptMasks = grid.lineMasks.clone(); 
+			for (int row=0 ; row<grid.rowCount ; row++) grid.updateLineMasks(row, true); 
+			for (int column=0 ; column<grid.columnCount ; column++) grid.updateLineMasks(column, false); 
+			for (int i=0 ; i<keptMasks.length ; i++) { 
+				if (keptMasks[i]!=grid.lineMasks[i]) throw new RuntimeException("Line mask "+i+" is "+Long.toBinaryString(keptMasks[i])+", but the cells make "+Long.toBinaryString(grid.lineMasks[i])); 
+			}
+		}
+		
+		private String makeRandomWord(int maxLength) { 
+			int length = 1 + random.nextInt(maxLength) ; 
+			StringBuilder sbuf = new StringBuilder(); 
+			for (int i=0 ; i<length ; i++) sbuf.append(testLetters.charAt(random.nextInt(testLetters.length()))); 
+			return sbuf.toString(); 
+		}
+		
+		/**
+		 * Returns a builder for the grid size, read from a throwaway clues-file, since that's the only way a {@link CrosswordInput} is made. 
+		 */
+		private static Builder makeBuilder(int rowCount, int columnCount) { 
+			try { 
+				File cluesFile = File.createTempFile("GridTest", ".txt"); 
+				try { 
+					Writer writer = new FileWriter(cluesFile); 
+					try { 
+						writer.write("-- Misc\n\nrows -- "+rowCount+"\ncolumns -- "+columnCount+"\n\n-- Clues\nAbcd -- Test.\n"); 
+					} finally { 
+						writer.close(); 
+					}
+					return new StandardBuilder(new CrosswordInput(cluesFile), null, null); 
+				} finally { 
+					cluesFile.delete(); 
+				}
+			} catch (IOException e) { 
+				throw new RuntimeException(e); 
+			}
+		}
 	}
 
 }
@@ -0,0 +1,71 @@
+package com.gingerdroids.crossword;
+
+import java.util.Arrays;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Grids which are no longer wanted, kept to be reused as copies of other grids, rather than making new ones. 
+ * <p> 
+ * Fleshing makes about two copies for each grid it expands, and drops each iteration's grids once the next iteration is done. 
+ * With a pool, the grids dropped by one iteration are the copies made in the one after, 
+ * so once the beams are full, fleshing reuses the same grids (and their arrays) over and over. 
+ * <p> 
+ * Grids are taken from the pool ({@link #copyOf(Grid)}) from many threads at once, without locking. 
+ * They are put back ({@link #recycle(Grid)}) from one thread, between iterations, while none are being taken. 
+ */
+class GridPool { 
+
+	private Grid [] spares = new Grid[64] ; 
+
+	/**
+	 * How many of {@link #spares} are left. Goes below zero when the pool runs out, and more are asked for. 
+	 */
+	private final AtomicInteger spareCount = new AtomicInteger(); 
+
+	/**
+	 * How many copies were made by reusing a grid, and how many by making a new one. 
+	 */
+	private final AtomicInteger reusedCount = new AtomicInteger(), createdCount = new AtomicInteger(); 
+
+	/**
+	 * Returns a copy of the grid, reusing a spare grid if there is one. May be called from any thread. 
+	 */
+	Grid copyOf(Grid old) { 
+		int index = spareCount.decrementAndGet(); 
+		if (index<0) { 
+			createdCount.incrementAndGet(); 
+			return new Grid(old); 
+		}
+		Grid grid = spares[index] ; 
+		spares[index] = null ; 
+		grid.copyFrom(old); 
+		reusedCount.incrementAndGet(); 
+		return grid ; 
+	}
+
+	/**
+	 * Puts a grid in the pool. Nothing else may still refer to it. 
+	 * Must not be called while grids are being taken. 
+	 */
+	void recycle(Grid grid) { 
+		int count = Math.max(spareCount.get(), 0); 
+		if (count==spares.length) spares = Arrays.copyOf(spares, 2*count); 
+		spares[count] = grid ; 
+		spareCount.set(count+1); 
+	}
+
+	/**
+	 * Returns how many copies were made by reusing a spare grid since the last call, and starts counting again. 
+	 */
+	int takeReusedCount() { 
+		return reusedCount.getAndSet(0); 
+	}
+
+	/**
+	 * Returns how many copies were made as new grids since the last call, and starts counting again. 
+	 */
+	int takeCreatedCount() { 
+		return createdCount.getAndSet(0); 
+	}
+
+}
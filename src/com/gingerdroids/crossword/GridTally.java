@@ -0,0 +1,270 @@
+package com.gingerdroids.crossword;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+
+import com.gingerdroids.crossword.Grid.PlacedWord;
+
+/**
+ * Counts and per-line, per-row and per-word tallies of a grid, from which {@link UsualQualityMeasure} computes its quality. 
+ * None of them depend on the measure's factors, so a tally can be shared by measures. 
+ * <p>
+ * A child grid differs from its parent by one word. 
+ * So the child's tally is computed from the parent's, looking only at the rows, columns and words which the new word touches. 
+ * This is much cheaper than scanning the whole grid for each candidate placement. 
+ * <p>
+ * Lines are indexed rows first, then columns. 
+ * A tally is not changed after it is computed, and may be shared by copies of a grid. 
+ *
+ * @see Grid#getTally()
+ */
+class GridTally { 
+
+	final int rowCount ; 
+	final int columnCount ; 
+
+	/**
+	 * Sum of the lengths of the placed words. 
+	 */
+	int sumLengths ; 
+
+	/**
+	 * Number of cells in both an across-word and a down-word. 
+	 */
+	int crossingsCount ; 
+
+	/**
+	 * Longest run of empty cells, for each line. 
+	 */
+	final int [] lineLongestGaps ; 
+
+	/**
+	 * The longest pending word length the span sums were computed for. 
+	 * If the grid's longest pending length is different, the span sums can't be used. 
+	 */
+	int spansLongestPendingLength ; 
+	final int [] lineFullSpans ; 
+	final int [] lineSymmetricSpans ; 
+	int fullSpansTotal ; 
+	int symmetricSpansTotal ; 
+
+	/**
+	 * Surrounded cells, for each row. The first and last rows are always zero. 
+	 * One count is for cells with parallel words on either side, the other for both sides. 
+	 */
+	final int [] rowSurroundedEither ; 
+	final int [] rowSurroundedBoth ; 
+	int surroundedEitherTotal ; 
+	int surroundedBothTotal ; 
+
+	/**
+	 * Number of placed words tallied. 
+	 * Per-word values are indexed as {@link Grid#placedWordList}. 
+	 */
+	int wordCount ; 
+	double [] wordNeedyLetters ; 
+	int [] wordCrossedCounts ; 
+
+	/**
+	 * Set when a copy of a grid shares this tally. 
+	 * A tally which is not shared can be reused as scratch space once its grid has unplaced the word. 
+	 */
+	boolean isShared = false ; 
+
+	private GridTally(int rowCount, int columnCount) { 
+		this.rowCount = rowCount ; 
+		this.columnCount = columnCount ; 
+		int lineCount = rowCount + columnCount ; 
+		this.lineLongestGaps = new int[lineCount] ; 
+		this.lineFullSpans = new int[lineCount] ; 
+		this.lineSymmetricSpans = new int[lineCount] ; 
+		this.rowSurroundedEither = new int[rowCount] ; 
+		this.rowSurroundedBoth = new int[rowCount] ; 
+		this.wordNeedyLetters = new double[16] ; 
+		this.wordCrossedCounts = new int[16] ; 
+	}
+
+	/**
+	 * Computes the tally by scanning the whole grid. 
+	 */
+	static GridTally scan(Grid grid) { 
+		GridTally tally = new GridTally(grid.rowCount, grid.columnCount); 
+		ArrayList<PlacedWord> placedWordList = grid.placedWordList ; 
+		//////  Words
+		tally.ensureWordCapacity(placedWordList.size()); 
+		for (PlacedWord placedWord : placedWordList) { 
+			tally.sumLengths += placedWord.word.length(); 
+			tally.tallyWord(grid, tally.wordCount, placedWord); 
+			tally.wordCount ++ ; 
+		}
+		//////  Crossings
+		for (int i=0 ; i<grid.rowCount ; i++) { 
+			for (int j=0 ; j<grid.columnCount ; j++) { 
+				if (grid.isCrossingCell(i, j)) tally.crossingsCount ++ ; 
+			}
+		}
+		//////  Lines and rows
+		tally.spansLongestPendingLength = grid.getLongestPendingLength(); 
+		for (int line=0 ; line<tally.lineLongestGaps.length ; line++) tally.tallyLine(grid, line); 
+		for (int i=1 ; i<grid.rowCount-1 ; i++) tally.tallyRowSurrounded(grid, i); 
+		return tally ; 
+	}
+
+	/**
+	 * Computes the tally of a grid from its parent's tally. 
+	 * The grid must be the parent with one more word placed, which is the last in its placed-word list. 
+	 *
+	 * @param scratch A tally which is no longer needed, and can be overwritten. May be null. 
+	 */
+	static GridTally afterPlacement(GridTally parent, Grid grid, GridTally scratch) { 
+		ArrayList<PlacedWord> placedWordList = grid.placedWordList ; 
+		if (placedWordList.size()!=parent.wordCount+1) throw new RuntimeException("Grid has "+placedWordList.size()+" words, but parent tally has "+parent.wordCount); 
+		PlacedWord placedWord = placedWordList.get(parent.wordCount); 
+		GridTally tally = (scratch!=null && scratch.rowCount==parent.rowCount && scratch.columnCount==parent.columnCount) ? scratch : new GridTally(parent.rowCount, parent.columnCount); 
+		tally.copyFrom(parent); 
+		final int rowCount = grid.rowCount ; 
+		final int wordLength = placedWord.word.length(); 
+		final boolean isAcross = placedWord.isAcross ; 
+		//////  Words: the new word, and any words it crosses
+		tally.sumLengths += wordLength ; 
+		tally.ensureWordCapacity(tally.wordCount+1); 
+		tally.tallyWord(grid, tally.wordCount, placedWord); 
+		tally.wordCount ++ ; 
+		int row = placedWord.row ; 
+		int column = placedWord.column ; 
+		for (int x=0 ; x<wordLength ; x++) { 
+			/* A crossing cell on the new word was already a letter, in a word going the other way. */
+			if (grid.isCrossingCell(row, column)) { 
+				tally.crossingsCount ++ ; 
+				int crossedIndex = findWord(placedWordList, parent.wordCount, row, column, !isAcross); 
+				tally.tallyWord(grid, crossedIndex, placedWordList.get(crossedIndex)); 
+			}
+			if (isAcross) column++ ; else row ++ ; 
+		}
+		//////  Lines: the word's own line, and the lines across it
+		int longestPendingLength = grid.getLongestPendingLength(); 
+		if (longestPendingLength!=tally.spansLongestPendingLength) { 
+			/* Every line's spans depend on the longest pending length. */
+			tally.spansLongestPendingLength = longestPendingLength ; 
+			for (int line=0 ; line<tally.lineLongestGaps.length ; line++) tally.tallyLine(grid, line); 
+		} else if (isAcross) { 
+			tally.tallyLine(grid, placedWord.row); 
+			for (int j=placedWord.column ; j<placedWord.column+wordLength ; j++) tally.tallyLine(grid, rowCount+j); 
+		} else { 
+			tally.tallyLine(grid, rowCount+placedWord.column); 
+			for (int i=placedWord.row ; i<placedWord.row+wordLength ; i++) tally.tallyLine(grid, i); 
+		}
+		//////  Surrounded cells: rows holding changed cells, and the rows either side
+		int firstRow = Math.max(placedWord.row-1, 1); 
+		int lastRow = Math.min(placedWord.row+(isAcross?1:wordLength), rowCount-2); 
+		for (int i=firstRow ; i<=lastRow ; i++) tally.tallyRowSurrounded(grid, i); 
+		return tally ; 
+	}
+
+	/**
+	 * Longest run of empty cells in any row or column. 
+	 */
+	int getLongestGapLength() { 
+		int longestSoFar = 0 ; 
+		for (int gap : lineLongestGaps) if (gap>longestSoFar) longestSoFar = gap ; 
+		return longestSoFar ; 
+	}
+
+	private void copyFrom(GridTally other) { 
+		this.sumLengths = other.sumLengths ; 
+		this.crossingsCount = other.crossingsCount ; 
+		System.arraycopy(other.lineLongestGaps, 0, lineLongestGaps, 0, lineLongestGaps.length); 
+		this.spansLongestPendingLength = other.spansLongestPendingLength ; 
+		System.arraycopy(other.lineFullSpans, 0, lineFullSpans, 0, lineFullSpans.length); 
+		System.arraycopy(other.lineSymmetricSpans, 0, lineSymmetricSpans, 0, lineSymmetricSpans.length); 
+		this.fullSpansTotal = other.fullSpansTotal ; 
+		this.symmetricSpansTotal = other.symmetricSpansTotal ; 
+		System.arraycopy(other.rowSurroundedEither, 0, rowSurroundedEither, 0, rowSurroundedEither.length); 
+		System.arraycopy(other.rowSurroundedBoth, 0, rowSurroundedBoth, 0, rowSurroundedBoth.length); 
+		this.surroundedEitherTotal = other.surroundedEitherTotal ; 
+		this.surroundedBothTotal = other.surroundedBothTotal ; 
+		ensureWordCapacity(other.wordCount); 
+		System.arraycopy(other.wordNeedyLetters, 0, wordNeedyLetters, 0, other.wordCount); 
+		System.arraycopy(other.wordCrossedCounts, 0, wordCrossedCounts, 0, other.wordCount); 
+		this.wordCount = other.wordCount ; 
+		this.isShared = false ; 
+	}
+
+	private void ensureWordCapacity(int capacity) { 
+		if (capacity>wordNeedyLetters.length) { 
+			int newLength = Math.max(capacity, wordNeedyLetters.length*2); 
+			wordNeedyLetters = Arrays.copyOf(wordNeedyLetters, newLength); 
+			wordCrossedCounts = Arrays.copyOf(wordCrossedCounts, newLength); 
+		}
+	}
+
+	/**
+	 * Index in the list of the word going the given way through the given cell. 
+	 * Only the first 'wordCount' words are searched. 
+	 */
+	static int findWord(ArrayList<PlacedWord> placedWordList, int wordCount, int row, int column, boolean isAcross) { 
+		for (int index=0 ; index<wordCount ; index++) { 
+			PlacedWord placedWord = placedWordList.get(index); 
+			if (placedWord.isAcross!=isAcross) continue ; 
+			int wordLength = placedWord.word.length() ; 
+			if (isAcross) { 
+				if (placedWord.row==row && placedWord.column<=column && column<placedWord.column+wordLength) return index ; 
+			} else { 
+				if (placedWord.column==column && placedWord.row<=row && row<placedWord.row+wordLength) return index ; 
+			}
+		}
+		throw new RuntimeException("No "+(isAcross?"across":"down")+" word at "+row+","+column); 
+	}
+
+	/**
+	 * Tallies the needy letters and crossings of a word. 
+	 * This must do the same arithmetic, in the same order, as {@link UsualQualityMeasure#computeCrossingNeediness(Grid, PlacedWord)}. 
+	 */
+	private void tallyWord(Grid grid, int index, PlacedWord placedWord) { 
+		int row = placedWord.row ; 
+		int column = placedWord.column ; 
+		int length = placedWord.word.length() ; 
+		boolean isAcross = placedWord.isAcross ; 
+		double needyLetters = 0 ; 
+		int crossed = 0 ; 
+		for (int i=0 ; i<length ; i++) { 
+			boolean isCellCrossed = grid.isCrossingCell(row, column) ; 
+			if (isCellCrossed) crossed ++ ; 
+			if (!isCellCrossed) needyLetters += 2 * (length-i) / (double)length ; 
+			if (isAcross) column++ ; else row ++ ; 
+		}
+		wordNeedyLetters[index] = needyLetters ; 
+		wordCrossedCounts[index] = crossed ; 
+	}
+
+	private final int [] spansTmp = new int[2] ; 
+
+	private void tallyLine(Grid grid, int line) { 
+		int start, step, lineLength ; 
+		if (line<rowCount) { 
+			start = grid.cellIndex(line, 0); 
+			step = 1 ; 
+			lineLength = columnCount ; 
+		} else { 
+			start = grid.cellIndex(0, line-rowCount); 
+			step = grid.stride ; 
+			lineLength = rowCount ; 
+		}
+		lineLongestGaps[line] = grid.getLongestGapLength(start, step, lineLength); 
+		UsualQualityMeasure.computeSpaceMeasures(spansTmp, grid, start, step, lineLength, spansLongestPendingLength); 
+		fullSpansTotal += spansTmp[0] - lineFullSpans[line] ; 
+		symmetricSpansTotal += spansTmp[1] - lineSymmetricSpans[line] ; 
+		lineFullSpans[line] = spansTmp[0] ; 
+		lineSymmetricSpans[line] = spansTmp[1] ; 
+	}
+
+	private void tallyRowSurrounded(Grid grid, int i) { 
+		int either = UsualQualityMeasure.countSurroundedCells(grid, i, false); 
+		int both = UsualQualityMeasure.countSurroundedCells(grid, i, true); 
+		surroundedEitherTotal += either - rowSurroundedEither[i] ; 
+		surroundedBothTotal += both - rowSurroundedBoth[i] ; 
+		rowSurroundedEither[i] = either ; 
+		rowSurroundedBoth[i] = both ; 
+	}
+
+}
@@ -0,0 +1,13 @@
+package com.gingerdroids.crossword;
+
+public class PackageTests { 
+	
+	public PackageTests() { 
+		new Grid.ClassTest(); 
+		System.out.println("Passed package test suite     "+this.getClass().getPackage().getName()); 
+	}
+	
+	public static void main(String [] args) { 
+		new PackageTests(); 
+	}
+}
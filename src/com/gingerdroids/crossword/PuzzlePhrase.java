@@ -33,9 +33,13 @@ public class PuzzlePhrase {
 		}
 	}
 	
+	/**
+	 * Numbers the phrases of one crossword, in the order their words are first met. 
+	 * Each crossword has its own, so crosswords built at once on different threads (see BatchBuilder) don't share a count. 
+	 */
 	static class Numberer { 
 		
-		private static int nextNumber = 1 ; 
+		private int nextNumber = 1 ; 
 		
 		void noteUse(PuzzlePhrase phrase) { 
 			if (phrase.phraseNumber < 0) { 
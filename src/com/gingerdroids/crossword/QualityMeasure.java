@@ -2,4 +2,13 @@ package com.gingerdroids.crossword;
 
 public interface QualityMeasure {
 	double computeQuality(Grid grid);  
+	
+	/**
+	 * Returns a quality at least as high as the grid would have with the word placed, computed without placing it. 
+	 * The word must be placeable there. 
+	 * Returns positive infinity if the measure can't bound the quality. 
+	 * 
+	 * @param gridQuality The grid's quality as it is, by this measure. 
+	 */
+	double boundQualityAfterPlacement(Grid grid, double gridQuality, String word, int row, int column, boolean isAcross); 
 }
@@ -0,0 +1,219 @@
+package com.gingerdroids.crossword;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.FilenameFilter;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Arrays;
+import java.util.Comparator;
+
+import com.gingerdroids.crossword.Grid.PlacedWord;
+
+/**
+ * Keeps finished grids on disk, so building the same puzzle again (eg, to rewrite the PDFs with a different font size) doesn't search again. 
+ * <p>
+ * An entry is keyed by a description of everything the grids depend on: 
+ * the builder's class, the grid size, the puzzle words, the quality measures, the build parameters, and the word-bank's words. 
+ * Nothing only used for writing PDFs (title, fonts, the clues' wording) is in the key. 
+ * Quality measures are described by their <code>toString()</code>, so a measure which doesn't describe its parameters there never matches. 
+ * <p>
+ * Each entry is a file, named by a hash of its key. The key is also kept in the file, and checked, so a hash collision is just a miss. 
+ * Once the folder holds more than its limit, the entries least recently used (by modification time, which a hit refreshes) are deleted. 
+ */
+public class ResultCache { 
+
+	/**
+	 * Name of the folder the apps keep their cache in, within the word-banks folder. 
+	 */
+	public static final String folderName = "results-cache" ; 
+
+	public static final String entrySuffix = ".grids" ; 
+
+	private static final int entryMagic = 0x43574752 ; // "CWGR"
+
+	/**
+	 * Changed whenever the entry layout changes, or the builder changes so it would build different grids. 
+	 */
+	private static final int entryVersion = 2 ; 
+
+	private final File dir ; 
+
+	private final long maxBytes ; 
+
+	public ResultCache(File dir, long maxBytes) { 
+		this.dir = dir ; 
+		this.maxBytes = maxBytes ; 
+	}
+
+	/**
+	 * Describes everything the grids built by the builder depend on. 
+	 * Thread counts are left out, because the grids don't depend on them. 
+	 */
+	static String describeKey(Builder builder, int desiredGridCount) { 
+		StringBuilder sb = new StringBuilder(); 
+		sb.append("version ").append(entryVersion).append('\n'); 
+		sb.append("builder ").append(builder.getClass().getName()).append('\n'); 
+		sb.append("size ").append(builder.rowCount).append('x').append(builder.columnCount).append('\n'); 
+		String [] words = builder.clueWords.clone(); 
+		Arrays.sort(words); 
+		sb.append("words ").append(Arrays.toString(words)).append('\n'); 
+		int totalWordCount = builder.buildInfoAtStart.words.length ; 
+		for (int currentWordCount=0 ; currentWordCount<=totalWordCount ; currentWordCount++) { 
+			sb.append("measure ").append(builder.qualityMeasureFactory.makeQualityMeasure(totalWordCount, currentWordCount)).append('\n'); 
+		}
+		sb.append("final ").append(Builder.qualityMeasure_final).append('\n'); 
+		sb.append("flesh ").append(Builder.candidateCountDuringFlesh).append(' ').append(Builder.nonCrossingPlacementsDuringFlesh); 
+		sb.append(' ').append(Builder.millisDuringFlesh).append(' ').append(Builder.targetQualityDuringFlesh).append(' ').append(Builder.maxCandidateCountDuringFlesh).append('\n'); 
+		sb.append("coat ").append(Builder.beamWidthDuringCoat).append(' ').append(Builder.candidatesPerGridDuringCoat).append(' ').append(Builder.millisPerGridDuringCoat).append('\n'); 
+		sb.append("wordbank ").append(builder.wordBank==null ? "none" : Long.toHexString(builder.wordBank.getContentHash())).append('\n'); 
+		sb.append("grids ").append(desiredGridCount).append('\n'); 
+		return sb.toString(); 
+	}
+
+	/**
+	 * Returns the grids stored under the key, rebuilt for the builder, best first ; 
+	 * or null if there are none, or the entry can't be read. 
+	 */
+	Grid [] load(String key, Builder builder) { 
+		File file = getEntryFile(key); 
+		if (!file.isFile()) return null ; 
+		try { 
+			DataInputStream in = new DataInputStream(new BufferedInputStream(new FileInputStream(file))); 
+			Grid [] grids ; 
+			try { 
+				if (in.readInt()!=entryMagic) return null ; 
+				byte [] keyBytes = new byte[in.readInt()] ; 
+				in.readFully(keyBytes); 
+				if (!key.equals(new String(keyBytes, StandardCharsets.UTF_8))) return null ; // Hash collision.
+				grids = new Grid[in.readInt()] ; 
+				for (int i=0 ; i<grids.length ; i++) grids[i] = readGrid(in, builder); 
+			} finally { 
+				in.close(); 
+			}
+			file.setLastModified(System.currentTimeMillis()); 
+			return grids ; 
+		} catch (IOException | RuntimeException e) { 
+			System.err.println("Result cache entry "+file.getPath()+" can't be read. Building again. ("+e+")"); 
+			file.delete(); 
+			return null ; 
+		}
+	}
+
+	/**
+	 * Replays the placed words into a new grid. 
+	 * The puzzle words come first in the list, because coating only starts once they are all placed. 
+	 */
+	private static Grid readGrid(DataInputStream in, Builder builder) throws IOException { 
+		Grid grid = new Grid(builder); 
+		double quality = in.readDouble(); 
+		int wordCount = in.readInt(); 
+		for (int i=0 ; i<wordCount ; i++) { 
+			String word = in.readUTF(); 
+			int row = in.readInt(); 
+			int column = in.readInt(); 
+			boolean isAcross = in.readBoolean(); 
+			boolean isPuzzleWord = in.readBoolean(); 
+			if (!isPuzzleWord && grid.isPuzzleBuilding) grid.notePuzzleWordsDone(); 
+			grid.placeWord(word, row, column, isAcross); 
+		}
+		if (grid.isPuzzleBuilding) grid.notePuzzleWordsDone(); 
+		grid.setQuality(quality); 
+		return grid ; 
+	}
+
+	/**
+	 * Stores the grids under the key, then evicts old entries if the folder is over its limit. 
+	 * The entry is written under a temporary name and then moved into place, so a reader never sees half an entry. 
+	 */
+	void store(String key, Grid [] grids) throws IOException { 
+		if (!dir.isDirectory() && !dir.mkdirs()) throw new IOException("Can't create result cache folder "+dir.getPath()); 
+		File file = getEntryFile(key); 
+		File tmpFile = File.createTempFile("entry", ".tmp", dir); 
+		DataOutputStream out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(tmpFile))); 
+		try { 
+			out.writeInt(entryMagic); 
+			byte [] keyBytes = key.getBytes(StandardCharsets.UTF_8); 
+			out.writeInt(keyBytes.length); 
+			out.write(keyBytes); 
+			out.writeInt(grids.length); 
+			for (Grid grid : grids) { 
+				out.writeDouble(grid.getQuality()); 
+				out.writeInt(grid.placedWordList.size()); 
+				for (PlacedWord placedWord : grid.placedWordList) { 
+					out.writeUTF(placedWord.word); 
+					out.writeInt(placedWord.row); 
+					out.writeInt(placedWord.column); 
+					out.writeBoolean(placedWord.isAcross); 
+					out.writeBoolean(placedWord.isPuzzleWord); 
+				}
+			}
+		} finally { 
+			out.close(); 
+		}
+		Files.move(tmpFile.toPath(), file.toPath(), StandardCopyOption.REPLACE_EXISTING); 
+		evict(); 
+	}
+
+	/**
+	 * Deletes the least recently used entries until the folder is within its limit. 
+	 * Another build may be evicting at the same time, so files which have already gone are ignored. 
+	 */
+	private void evict() { 
+		File [] files = dir.listFiles(new FilenameFilter() { 
+			@Override
+			public boolean accept(File dir, String filename) { 
+				return filename.endsWith(entrySuffix); 
+			}
+		}); 
+		if (files==null) return ; 
+		long totalBytes = 0 ; 
+		final long [] lastModifieds = new long[files.length] ; 
+		Integer [] order = new Integer[files.length] ; 
+		for (int i=0 ; i<files.length ; i++) { 
+			totalBytes += files[i].length(); 
+			lastModifieds[i] = files[i].lastModified(); 
+			order[i] = i ; 
+		}
+		if (totalBytes<=maxBytes) return ; 
+		Arrays.sort(order, new Comparator<Integer>() { 
+			@Override
+			public int compare(Integer a, Integer b) { 
+				return Long.compare(lastModifieds[a], lastModifieds[b]); 
+			}
+		}); 
+		for (int i=0 ; i<order.length && totalBytes>maxBytes ; i++) { 
+			File file = files[order[i]] ; 
+			long length = file.length(); 
+			if (file.delete()) totalBytes -= length ; 
+		}
+	}
+
+	private File getEntryFile(String key) { 
+		return new File(dir, hashKey(key)+entrySuffix); 
+	}
+
+	/**
+	 * Hex of the key's SHA-256, for the entry's filename. 
+	 */
+	private static String hashKey(String key) { 
+		try { 
+			byte [] digest = MessageDigest.getInstance("SHA-256").digest(key.getBytes(StandardCharsets.UTF_8)); 
+			StringBuilder sb = new StringBuilder(); 
+			for (byte b : digest) sb.append(String.format("%02x", b & 0xff)); 
+			return sb.toString(); 
+		} catch (NoSuchAlgorithmException e) { 
+			throw new RuntimeException(e); 
+		}
+	}
+
+}
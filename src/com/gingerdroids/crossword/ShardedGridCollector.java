@@ -0,0 +1,249 @@
+package com.gingerdroids.crossword;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.PriorityQueue;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Extracts the best however-many grids from all the grids added to it, like {@link SortedGridList},
+ * but grids can be added from many threads at once without waiting on each other. 
+ * <p>
+ * Each thread adds to its own shard, which keeps its own best grids and does its own duplicate check. 
+ * The shards are merged once, when the sorted grids are first asked for. No grids can be added after that. 
+ * <p>
+ * Every grid is added with a sequence number, and the result is the same as adding the grids to a {@link SortedGridList} in sequence order. 
+ * So the result doesn't depend on which thread added which grid, or when. 
+ * Of grids with the same signature, only the one with the lowest sequence number is considered. 
+ * Of grids with the same quality, the ones with lower sequence numbers are preferred. 
+ * (This relies on grids with the same signature having the same quality, which they should, having the same cells.) 
+ */
+public class ShardedGridCollector { 
+
+	final QualityMeasure qualityMeasure ; 
+
+	public final int maxKept ; 
+
+	/**
+	 * Bits of the quality threshold (see {@link #getQualityThreshold()}). 
+	 * Only ever raised. 
+	 */
+	private final AtomicLong thresholdBits = new AtomicLong(Double.doubleToLongBits(Double.NEGATIVE_INFINITY)); 
+
+	/**
+	 * Relative margin of the quality threshold below the kept grids. Much bigger than rounding errors. 
+	 */
+	private static final double thresholdMargin = 1e-9 ; 
+
+	private final ArrayList<Shard> shards = new ArrayList<Shard>(); 
+
+	private final ThreadLocal<Shard> threadShard = new ThreadLocal<Shard>() { 
+		@Override
+		protected Shard initialValue() { 
+			Shard shard = new Shard(); 
+			synchronized (shards) { 
+				shards.add(shard); 
+			}
+			return shard ; 
+		}
+	}; 
+
+	/**
+	 * The merged result. Null until the shards are merged. 
+	 */
+	private Grid [] sortedGrids ; 
+	
+	/**
+	 * Counts of grids offered but not in the result, set when the shards are merged. 
+	 * Every grid offered is in the result, or a duplicate, or rejected (below the threshold, or not among the best {@link #maxKept}). 
+	 */
+	private long duplicateCount, rejectedCount ; 
+
+	public ShardedGridCollector(QualityMeasure qualityMeasure, int maxKept) { 
+		if (qualityMeasure==null) throw new NullPointerException("QualityMeasure arg cannot be null."); 
+		this.qualityMeasure = qualityMeasure ; 
+		this.maxKept = maxKept ; 
+	}
+
+	/**
+	 * Offers a grid. May be called from any thread. 
+	 *
+	 * @param sequence Position of the grid in the notional sequential order. Each grid offered should have a different sequence number. 
+	 * @return Whether the grid is kept for now. It may still be dropped when the shards are merged. 
+	 */
+	boolean addGrid(Grid grid, long sequence) { 
+		if (sortedGrids!=null) throw new IllegalStateException("Grids have already been merged."); 
+		return threadShard.get().addGrid(grid, sequence); 
+	}
+
+	/**
+	 * Grids with quality below this will not be kept. 
+	 * It can be read at any time, from any thread, and only increases. 
+	 * Producers use it to skip work on grids which would be discarded. 
+	 * <p>
+	 * It is a little below the quality of the worst grid a shard would keep. 
+	 * Grids with the same cells can differ in the last bits of their quality (their words were summed in a different order), 
+	 * and a grid might only be kept because a duplicate of it, a little better, was discarded. 
+	 */
+	double getQualityThreshold() { 
+		return Double.longBitsToDouble(thresholdBits.get()); 
+	}
+
+	private void raiseQualityThreshold(double quality) { 
+		while (true) { 
+			long currentBits = thresholdBits.get(); 
+			if (quality<=Double.longBitsToDouble(currentBits)) return ; 
+			if (thresholdBits.compareAndSet(currentBits, Double.doubleToLongBits(quality))) return ; 
+		}
+	}
+
+	/**
+	 * Returns a newly created array of {@link Grid}, best first. 
+	 * The first call merges the shards ; all grids must have been added by then. 
+	 */
+	public Grid[] getSortedGrids() { 
+		if (sortedGrids==null) merge(); 
+		return sortedGrids.clone(); 
+	}
+
+	public int getCurrentCount() { 
+		if (sortedGrids==null) merge(); 
+		return sortedGrids.length ; 
+	}
+
+	/**
+	 * How many grids offered were duplicates of grids offered with lower sequence numbers. Merges the shards if they haven't been. 
+	 */
+	public long getDuplicateCount() { 
+		if (sortedGrids==null) merge(); 
+		return duplicateCount ; 
+	}
+	
+	/**
+	 * How many grids offered were not duplicates, but not good enough to be kept. Merges the shards if they haven't been. 
+	 */
+	public long getRejectedCount() { 
+		if (sortedGrids==null) merge(); 
+		return rejectedCount ; 
+	}
+	
+	private synchronized void merge() { 
+		if (sortedGrids!=null) return ; 
+		//////  Lowest sequence number of each signature, over all shards
+		HashMap<Long,Long> firstSequences = new HashMap<Long, Long>(); 
+		for (Shard shard : shards) { 
+			duplicateCount += shard.duplicateCount ; 
+			rejectedCount += shard.rejectedCount ; 
+			for (Map.Entry<Long,Long> entry : shard.firstSequences.entrySet()) { 
+				Long previous = firstSequences.get(entry.getKey()); 
+				if (previous==null || entry.getValue()<previous) firstSequences.put(entry.getKey(), entry.getValue()); 
+			}
+		}
+		//////  Kept grids which are the first of their signature
+		ArrayList<Entry> candidates = new ArrayList<Entry>(); 
+		for (Shard shard : shards) { 
+			for (Entry entry : shard.kept) { 
+				if (firstSequences.get(entry.signatureHash)==entry.sequence) candidates.add(entry); 
+				else duplicateCount ++ ; 
+			}
+		}
+		Collections.sort(candidates, bestFirst); 
+		int count = Math.min(candidates.size(), maxKept); 
+		rejectedCount += candidates.size() - count ; 
+		Grid [] merged = new Grid[count] ; 
+		for (int i=0 ; i<count ; i++) merged[i] = candidates.get(i).grid ; 
+		this.sortedGrids = merged ; 
+		shards.clear(); 
+	}
+
+	private static class Entry { 
+		final Grid grid ; 
+		final double quality ; 
+		final long sequence ; 
+		final long signatureHash ; 
+		Entry(Grid grid, double quality, long sequence, long signatureHash) { 
+			this.grid = grid ; 
+			this.quality = quality ; 
+			this.sequence = sequence ; 
+			this.signatureHash = signatureHash ; 
+		}
+	}
+
+	/**
+	 * Higher quality first ; of equal qualities, lower sequence first. 
+	 */
+	private static final Comparator<Entry> bestFirst = new Comparator<Entry>() { 
+		@Override
+		public int compare(Entry a, Entry b) { 
+			if (a.quality>b.quality) return -1 ; 
+			if (a.quality<b.quality) return 1 ; 
+			return Long.compare(a.sequence, b.sequence); 
+		}
+	}; 
+
+	private static final Comparator<Entry> worstFirst = Collections.reverseOrder(bestFirst); 
+
+	/**
+	 * One thread's grids. Only that thread touches it until the merge. 
+	 */
+	private class Shard { 
+
+		/**
+		 * Lowest sequence number offered to this shard for each signature, whether or not the grid was kept. 
+		 */
+		final HashMap<Long,Long> firstSequences = new HashMap<Long, Long>(); 
+
+		/**
+		 * The best grids offered to this shard, worst at the head. 
+		 */
+		final PriorityQueue<Entry> kept = new PriorityQueue<Entry>(worstFirst); 
+		
+		/**
+		 * Grids this shard has dropped, as in {@link ShardedGridCollector#duplicateCount}. 
+		 */
+		long duplicateCount, rejectedCount ; 
+
+		boolean addGrid(Grid grid, long sequence) { 
+			long signatureHash = grid.getSignatureHash(); 
+			Long previousSequence = firstSequences.get(signatureHash); 
+			if (previousSequence!=null) { 
+				duplicateCount ++ ; // One of the two.
+				if (previousSequence<sequence) return false ; // Duplicate of an earlier grid.
+				/* Offered out of sequence: this grid replaces the later duplicate. */
+				boolean wasKept = false ; 
+				for (Entry entry : kept) { 
+					if (entry.signatureHash==signatureHash) { 
+						kept.remove(entry); 
+						wasKept = true ; 
+						break ; 
+					}
+				}
+				if (!wasKept) rejectedCount -- ; // The later duplicate was counted as rejected, not kept.
+			}
+			firstSequences.put(signatureHash, sequence); 
+			grid.setQuality(qualityMeasure); 
+			double quality = grid.getQuality(); 
+			if (quality<getQualityThreshold()) { 
+				rejectedCount ++ ; 
+				return false ; 
+			}
+			Entry newEntry = new Entry(grid, quality, sequence, signatureHash); 
+			kept.add(newEntry); 
+			boolean isKept = true ; 
+			if (kept.size()>maxKept) { 
+				isKept = kept.poll()!=newEntry ; 
+				rejectedCount ++ ; 
+			}
+			if (maxKept>0 && kept.size()>=maxKept) { 
+				/* This shard alone has enough grids at least this good. */
+				double worstQuality = kept.peek().quality ; 
+				raiseQualityThreshold(worstQuality - (Math.abs(worstQuality)+1) * thresholdMargin); 
+			}
+			return isKept ; 
+		}
+	}
+
+}
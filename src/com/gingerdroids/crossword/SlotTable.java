@@ -0,0 +1,130 @@
+package com.gingerdroids.crossword;
+
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Every slot of a grid size: each place a word of each length could go, across or down, within the grid. 
+ * <p> 
+ * A slot is numbered by its id, and its details are in the arrays, indexed by id, so loops over slots don't recompute them. 
+ * The slots of each length and direction have consecutive ids (see {@link #getFirstSlot(int, boolean)}): 
+ * across slots row by row, then along each row ; down slots column by column, then down each column. 
+ * <p> 
+ * The table only depends on the grid size, so it is made once for each size, and shared by all the grids of that size, on any thread. 
+ *
+ * @see #forSize(int, int) 
+ */
+class SlotTable { 
+
+	private static final ConcurrentHashMap<Long,SlotTable> tablesBySize = new ConcurrentHashMap<Long, SlotTable>(); 
+
+	final int rowCount ; 
+	final int columnCount ; 
+
+	/**
+	 * Row and column of each slot's first cell. 
+	 */
+	final int [] rows, columns ; 
+
+	final int [] lengths ; 
+
+	final boolean [] isAcrosses ; 
+
+	/**
+	 * Cell-index (see {@link Grid#cellIndex(int, int)}) of each slot's first cell, 
+	 * and of the cell past its last (whose edge closes the word). 
+	 */
+	final int [] startIndices, endIndices ; 
+
+	/**
+	 * For each slot, the row (across) or column (down) it is in, and how far along that line it starts. 
+	 */
+	final int [] lines, lineStarts ; 
+
+	/**
+	 * First id of the slots of each length, and the id after the last, across and down. Indexed by length, up to one more than the longest. 
+	 */
+	private final int [] acrossFirstSlots, downFirstSlots ; 
+
+	/**
+	 * Returns the table for the grid size, making it if this is the first grid of that size. 
+	 */
+	static SlotTable forSize(int rowCount, int columnCount) { 
+		Long key = ((long) rowCount << 32) | columnCount ; 
+		SlotTable table = tablesBySize.get(key); 
+		if (table!=null) return table ; 
+		SlotTable newTable = new SlotTable(rowCount, columnCount); 
+		SlotTable previous = tablesBySize.putIfAbsent(key, newTable); 
+		return (previous!=null) ? previous : newTable ; 
+	}
+
+	private SlotTable(int rowCount, int columnCount) { 
+		this.rowCount = rowCount ; 
+		this.columnCount = columnCount ; 
+		int stride = columnCount + 1 ; // As in Grid.
+		//////  Count the slots
+		int slotCount = 0 ; 
+		for (int length=1 ; length<=columnCount ; length++) slotCount += rowCount * (columnCount-length+1) ; 
+		for (int length=1 ; length<=rowCount ; length++) slotCount += columnCount * (rowCount-length+1) ; 
+		this.rows = new int[slotCount] ; 
+		this.columns = new int[slotCount] ; 
+		this.lengths = new int[slotCount] ; 
+		this.isAcrosses = new boolean[slotCount] ; 
+		this.startIndices = new int[slotCount] ; 
+		this.endIndices = new int[slotCount] ; 
+		this.lines = new int[slotCount] ; 
+		this.lineStarts = new int[slotCount] ; 
+		this.acrossFirstSlots = new int[columnCount+2] ; 
+		this.downFirstSlots = new int[rowCount+2] ; 
+		//////  Fill in the slots
+		int slot = 0 ; 
+		for (int length=1 ; length<=columnCount+1 ; length++) { 
+			acrossFirstSlots[length] = slot ; 
+			if (length>columnCount) break ; 
+			for (int row=0 ; row<rowCount ; row++) { 
+				for (int column=0 ; column<=columnCount-length ; column++) { 
+					setSlot(slot++, row, column, length, true, stride); 
+				}
+			}
+		}
+		for (int length=1 ; length<=rowCount+1 ; length++) { 
+			downFirstSlots[length] = slot ; 
+			if (length>rowCount) break ; 
+			for (int column=0 ; column<columnCount ; column++) { 
+				for (int row=0 ; row<=rowCount-length ; row++) { 
+					setSlot(slot++, row, column, length, false, stride); 
+				}
+			}
+		}
+	}
+
+	private void setSlot(int slot, int row, int column, int length, boolean isAcross, int stride) { 
+		int step = isAcross ? 1 : stride ; 
+		rows[slot] = row ; 
+		columns[slot] = column ; 
+		lengths[slot] = length ; 
+		isAcrosses[slot] = isAcross ; 
+		startIndices[slot] = row*stride + column ; 
+		endIndices[slot] = startIndices[slot] + length*step ; 
+		lines[slot] = isAcross ? row : column ; 
+		lineStarts[slot] = isAcross ? column : row ; 
+	}
+
+	/**
+	 * Id of the first slot of the length and direction. If there are none, it is the same as {@link #getEndSlot(int, boolean)}. 
+	 */
+	int getFirstSlot(int length, boolean isAcross) { 
+		int [] firstSlots = isAcross ? acrossFirstSlots : downFirstSlots ; 
+		if (length<1 || length>=firstSlots.length-1) return 0 ; 
+		return firstSlots[length] ; 
+	}
+
+	/**
+	 * One more than the id of the last slot of the length and direction. 
+	 */
+	int getEndSlot(int length, boolean isAcross) { 
+		int [] firstSlots = isAcross ? acrossFirstSlots : downFirstSlots ; 
+		if (length<1 || length>=firstSlots.length-1) return 0 ; 
+		return firstSlots[length+1] ; 
+	}
+
+}
@@ -1,9 +1,9 @@
 package com.gingerdroids.crossword;
 
-import java.util.HashSet;
-import java.util.Set;
+import java.util.HashMap;
 
 import com.gingerdroids.crossword.apps.PdfClueless;
+import com.gingerdroids.utils_java.LongHashSet;
 import com.gingerdroids.utils_java.SortedList;
 import com.gingerdroids.utils_java.Util;
 
@@ -27,7 +27,21 @@ public class SortedGridList extends SortedList {
 	final QualityMeasure qualityMeasure ; 
 	
 	
-	Set<Object> seenSignatures = new HashSet<Object>() ; 
+	/**
+	 * Debugging switch. When set, every signature-hash is checked against the full string signature, to catch hash collisions. 
+	 * It is slow, and keeps every string signature alive. 
+	 */
+	static boolean isCheckingSignatureHashes = false ; 
+	
+	/**
+	 * The {@link Grid#getSignatureHash()} of every grid offered to this list, whether kept or not. 
+	 */
+	LongHashSet seenSignatures = new LongHashSet() ; 
+	
+	/**
+	 * Only used when {@link #isCheckingSignatureHashes} is set. 
+	 */
+	private HashMap<Long,Object> checkedSignatures ; 
 
 	public SortedGridList(QualityMeasure qualityMeasure, int maxKept) { 
 		super(maxKept);
@@ -37,11 +51,11 @@ public class SortedGridList extends SortedList {
 	
 	/* Needs to be thread-safe coz of parallelization in Build3Flesh.addOneFleshWord(). */
 	synchronized boolean addGrid(Grid grid, boolean wantCopy) { 
-		Object signature = grid.getSignature();
-		if (seenSignatures.contains(signature)) { 
+		long signatureHash = grid.getSignatureHash(); 
+		if (isCheckingSignatureHashes) checkSignatureHash(grid, signatureHash); 
+		if (!seenSignatures.add(signatureHash)) { 
 			return false ; 
 		}
-		seenSignatures.add(signature); 
 		grid.setQuality(qualityMeasure); 
 		double quality = grid.getQuality();
 		final double thresholdQuality = getQualityThreshold(); 
@@ -52,6 +66,17 @@ public class SortedGridList extends SortedList {
 		return true ; 
 	}
 	
+	private void checkSignatureHash(Grid grid, long signatureHash) { 
+		if (checkedSignatures==null) checkedSignatures = new HashMap<Long, Object>(); 
+		Object signature = grid.getSignature(); 
+		Object previousSignature = checkedSignatures.get(signatureHash); 
+		if (previousSignature==null) { 
+			checkedSignatures.put(signatureHash, signature); 
+		} else if (!previousSignature.equals(signature)) { 
+			throw new RuntimeException("Signature hash collision: "+Long.toHexString(signatureHash)+" for '"+previousSignature+"' and '"+signature+"'"); 
+		}
+	}
+	
 	public int addGrids(Grid [] grids, boolean wantCopy) { 
 		int addedCount = 0 ; 
 		for (Grid grid : grids) if (addGrid(grid, wantCopy)) addedCount ++ ;
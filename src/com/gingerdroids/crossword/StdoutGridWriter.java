@@ -31,28 +31,28 @@ class StdoutGridWriter {
 
 	protected void writeVerticalInterstice(int i, int j) { 
 		boolean isClosed = false ; 
-		isClosed |= grid.columnHardTopEdges[j][i] ; 
+		isClosed |= grid.isHardTopEdge(i, j) ; 
 		if (j<columnCount && i>0 && i<rowCount) { 
-			Cell cellAbove = grid.rows[i-1][j];
-			Cell cellHere = grid.rows[i][j];
-			isClosed |= cellAbove.hasLetter() && !cellAbove.isInDown ; 
-			isClosed |= cellHere.hasLetter() && !cellHere.isInDown ; 
+			Cell cellAbove = grid.getCell(i-1, j);
+			Cell cellHere = grid.getCell(i, j);
+			isClosed |= cellAbove.hasLetter() && !cellAbove.isInDown() ; 
+			isClosed |= cellHere.hasLetter() && !cellHere.isInDown() ; 
 		}
 		System.out.print(isClosed ? '\u2014' : ' '); 
 	}
 
 	protected void writeCell(int i, int j) { 
-		System.out.print(this.grid.rows[i][j].ch); 
+		System.out.print(this.grid.getChar(i, j)); 
 	}
 
 	protected void writeHorizontalInterstice(int i, int j) { 
 		boolean isClosed = false ; 
-		isClosed |= this.grid.rowHardLeftEdges[i][j] ; 
+		isClosed |= this.grid.isHardLeftEdge(i, j) ; 
 		if (i<rowCount && j>0 && j<columnCount) { 
-			Cell cellLeft = grid.rows[i][j-1] ; 
-			Cell cellHere = grid.rows[i][j] ; 
-			isClosed |= cellLeft.hasLetter() && !cellLeft.isInAcross ; 
-			isClosed |= cellHere.hasLetter() && !cellHere.isInAcross ; 
+			Cell cellLeft = grid.getCell(i, j-1) ; 
+			Cell cellHere = grid.getCell(i, j) ; 
+			isClosed |= cellLeft.hasLetter() && !cellLeft.isInAcross() ; 
+			isClosed |= cellHere.hasLetter() && !cellHere.isInAcross() ; 
 		}
 		System.out.print(isClosed ? '|' : ' '); 
 	}
@@ -21,6 +21,18 @@ public class UsualQualityMeasure implements QualityMeasure {
 	final double virginFactor ; // Must be positive, usually less-equal one. Small values discourage words with no crossing. 
 	final double [] edgePenalties ; 
 	
+	/**
+	 * Whether {@link #boundQualityAfterPlacement(Grid, double, String, int, int, boolean)} can bound qualities. 
+	 * Its bounds assume none of the factors are negative. 
+	 */
+	private final boolean isBoundable ; 
+	
+	/**
+	 * Added to the bounds, so they are still bounds despite rounding. 
+	 * The bound's arithmetic is not in the same order as the quality's, so they can differ in their last bits. 
+	 */
+	private static final double boundMargin = 1e-9 ; 
+	
 	/**
 	 * Constructor. 
 	 * 
@@ -46,6 +58,7 @@ public class UsualQualityMeasure implements QualityMeasure {
 		this.needinessFactor = needinessFactor ; 
 		this.virginFactor = virginFactor ; 
 		this.edgePenalties = normalizeEdgePenalties(edgePenalties); 
+		this.isBoundable = lengthsFactor>=0 && pendingFactor>=0 && crossingsFactor>=0 && fullSpanFactor>=0 && symSpanFactor>=0 && surroundedFactor>=0 && needinessFactor>=0 && virginFactor>0 ; 
 	}
 	
 	private static double [] normalizeEdgePenalties(double [] in) { 
@@ -58,13 +71,109 @@ public class UsualQualityMeasure implements QualityMeasure {
 		return out ; 
 	}
 
+	/**
+	 * Lists the parameters, so two measures which compute the same qualities have the same string. 
+	 */
+	@Override
+	public String toString() { 
+		return "UsualQualityMeasure("+lengthsFactor+", "+pendingFactor+", "+crossingsFactor+", "+fullSpanFactor+", "+symSpanFactor+", "+surroundedFactor+", "+isSurroundedBoth+", "+needinessFactor+", "+virginFactor+", "+Arrays.toString(edgePenalties)+")" ; 
+	}
+
+	/**
+	 * When set, every quality computed from a {@link GridTally} is checked against a full scan of the grid. 
+	 * The two must be bit-identical. This is slow, and is for debugging. 
+	 */
+	static boolean isCheckingTallies = false ; 
+
+	/**
+	 * Computes the quality from the grid's {@link GridTally}. 
+	 * The tally is usually derived from the parent grid's tally, so this doesn't have to scan the whole grid. 
+	 * The result is the same as {@link #computeQualityByScanning(Grid)}. 
+	 */
 	public double computeQuality(Grid grid) {
+		GridTally tally = grid.getTally(); 
+		ArrayList<PlacedWord> placedWordList = grid.placedWordList ;
+		//////  Compute word-lengths measure 
+		double wordLengthsMeasure = (lengthsFactor!=0) ? tally.sumLengths : 0.0 ; 
+		//////  Compute pending word length measure 
+		double pendingLengthsMeasure ; 
+		if (pendingFactor!=0) { 
+			pendingLengthsMeasure = - sumPendingLengthsOverGap(grid, tally.getLongestGapLength()) ; 
+		} else { 
+			pendingLengthsMeasure = 0.0 ; // Does not contribute. 
+		}
+		//////  Compute crossed cells measure 
+		double crossedCellsMeasure = (crossingsFactor!=0) ? tally.crossingsCount : 0.0 ; 
+		//////  Compute reachable spaces measures 
+		double fullSpanMeasure ; 
+		double symSpanMeasure ; 
+		if (fullSpanFactor!=0 || symSpanFactor!=0) { 
+			if (tally.spansLongestPendingLength==grid.getLongestPendingLength()) { 
+				fullSpanMeasure = tally.fullSpansTotal ; 
+				symSpanMeasure = tally.symmetricSpansTotal ; 
+			} else { 
+				/* Pending words have changed without a word being placed. Rare, so just scan. */
+				double [] spanMeasures = scanSpaceMeasures(grid); 
+				fullSpanMeasure = spanMeasures[0] ; 
+				symSpanMeasure = spanMeasures[1] ; 
+			}
+		} else { 
+			fullSpanMeasure = 0.0 ; // Does not contribute. 
+			symSpanMeasure = 0.0 ; // Does not contribute. 
+		}
+		//////  Compute surrounded cells measure 
+		double surroundedCellMeasure ; 
+		if (surroundedFactor!=0) { 
+			surroundedCellMeasure = - (isSurroundedBoth ? tally.surroundedBothTotal : tally.surroundedEitherTotal) ; 
+		} else { 
+			surroundedCellMeasure = 0.0 ; // Does not contribute. 
+		}
+		//////  Compute crossing-neediness measure 
+		double needCrossingsMeasure ; 
+		if (needinessFactor!=0) { 
+			/* Same arithmetic, in the same order, as computeCrossingNeediness() summed over the words. */
+			double sumOverWords = 0 ; 
+			for (int index=0 ; index<tally.wordCount ; index++) { 
+				PlacedWord placedWord = placedWordList.get(index); 
+				if (!placedWord.isPuzzleWord) continue ; // Neediness is zero. 
+				int length = placedWord.word.length() ; 
+				sumOverWords += tally.wordNeedyLetters[index] * length / (tally.wordCrossedCounts[index]+virginFactor) ; 
+			}
+			needCrossingsMeasure = - sumOverWords ; 
+		} else { 
+			needCrossingsMeasure = 0.0 ; // Does not contribute. 
+		}
+		//////  Compute favour-centre measure 
+		double favourCentreMeasure = computeFavourCentreMeasure(grid); 
+		//////  Combine measures
+		double quality = 
+				wordLengthsMeasure * lengthsFactor + 
+				pendingLengthsMeasure * pendingFactor + 
+				fullSpanMeasure * fullSpanFactor + 
+				symSpanMeasure * symSpanFactor + 
+				crossedCellsMeasure * crossingsFactor + 
+				surroundedCellMeasure * surroundedFactor + 
+				needCrossingsMeasure * needinessFactor + 
+				favourCentreMeasure + 
+				0 ; 
+		if (isCheckingTallies) { 
+			double scannedQuality = computeQualityByScanning(grid); 
+			if (Double.doubleToLongBits(quality)!=Double.doubleToLongBits(scannedQuality)) { 
+				throw new RuntimeException("Tallied quality "+quality+" differs from scanned quality "+scannedQuality); 
+			}
+		}
+		return quality ; 
+	}
+
+	/**
+	 * Computes the quality by scanning the whole grid. 
+	 * Kept as the reference for {@link #computeQuality(Grid)}. 
+	 */
+	double computeQualityByScanning(Grid grid) {
 		/*
 		 * As the grid fills and we have most of the required words in the grid, we care less about available space and more about appearance. 
 		 */
 		ArrayList<PlacedWord> placedWordList = grid.placedWordList ;
-		Cell[][] rows = grid.rows ; 
-		Cell[][] columns = grid.columns ; 
 		final int rowCount = grid.rowCount ; 
 		final int columnCount = grid.columnCount ; 
 		//////  Compute word-lengths measure - sum of the lengths of the placed words
@@ -81,16 +190,7 @@ public class UsualQualityMeasure implements QualityMeasure {
 		//////  Compute pending word length measure 
 		double pendingLengthsMeasure ; 
 		if (pendingFactor!=0) { 
-			int longestGapLength = grid.getLongestGapLength(); 
-			int sum = 0 ; 
-			List<String> pendingWords = grid.getPendingWords();
-			for (int i=pendingWords.size()-1 ; i>=0 ; i--) { // From longest to shortest
-				String pendingWord = pendingWords.get(i); 
-				int length = pendingWord.length(); 
-				if (length<=longestGapLength) break ; 
-				sum += length ; 
-			}
-			pendingLengthsMeasure = - sum ; 
+			pendingLengthsMeasure = - sumPendingLengthsOverGap(grid, grid.getLongestGapLength()) ; 
 		} else { 
 			pendingLengthsMeasure = 0.0 ; // Does not contribute. 
 		}
@@ -98,9 +198,9 @@ public class UsualQualityMeasure implements QualityMeasure {
 		double crossedCellsMeasure ; // Magnitude: number of crossing cells
 		if (crossingsFactor!=0) { 
 			int crossingsCount = 0 ; 
-			for (Cell[] row : rows) { 
-				for (Cell cell : row) {
-					if (cell.isInAcross && cell.isInDown) crossingsCount ++ ; 
+			for (int i=0 ; i<rowCount ; i++) { 
+				for (int j=0 ; j<columnCount ; j++) {
+					if (grid.isCrossingCell(i, j)) crossingsCount ++ ; 
 				}
 			}
 			crossedCellsMeasure = crossingsCount ; 
@@ -111,10 +211,7 @@ public class UsualQualityMeasure implements QualityMeasure {
 		double fullSpanMeasure ; // Magnitude: Decreasing fraction of unused cells
 		double symSpanMeasure ; // Magnitude: Decreasing fraction of unused cells
 		if (fullSpanFactor!=0 || symSpanFactor!=0) { 
-			double [] spanMeasures = new double[2] ; // Index 0 is full span measure, index 1 is symmetric span measure. 
-			Arrays.fill(spanMeasures, 0);
-			for (Cell[] row : rows) computeSpaceMeasures(spanMeasures, grid, row); 
-			for (Cell[] column : columns) computeSpaceMeasures(spanMeasures, grid, column); 
+			double [] spanMeasures = scanSpaceMeasures(grid); 
 			fullSpanMeasure = spanMeasures[0] ; 
 			symSpanMeasure = spanMeasures[1] ; 
 		} else { 
@@ -125,38 +222,7 @@ public class UsualQualityMeasure implements QualityMeasure {
 		double surroundedCellMeasure ; // Magnitude: Increasing fraction of filled cells
 		if (surroundedFactor!=0) { 
 			int surroundedCount = 0 ; 
-			for (int i=1 ; i<rowCount-1 ; i++) { 
-				for (int j=0 ; j<columnCount ; j++) { 
-					Cell cell = rows[i][j] ; 
-					if( cell.isInAcross) { 
-						if (cell.isInDown) { 
-							/* Here we know: Cell is crossed both ways. Is not in surrounded-count. */
-						} else { 
-							/* Here we know: Cell is in an across-word only. */
-							boolean isAboveFree = isFree(rows, i, j-1);
-							boolean isBelowFree = isFree(rows, i, j+1);
-							if (isSurroundedBoth) { 
-								if (!isAboveFree && !isBelowFree) surroundedCount ++ ; 
-							} else { 
-								if (!isAboveFree || !isBelowFree) surroundedCount ++ ; 
-							}
-						}
-					} else { 
-						if (cell.isInDown) { 
-							/* Here we know: Cell is in a down-word only. */
-							boolean isLeftFree = isFree(rows, i-1, j);
-							boolean isRightFree = isFree(rows, i+1, j);
-							if (isSurroundedBoth) { 
-								if (!isLeftFree && !isRightFree) surroundedCount ++ ; 
-							} else { 
-								if (!isLeftFree || !isRightFree) surroundedCount ++ ; 
-							}
-						} else { 
-							/* Here we know: Cell is not in a word. Is not in surrounded-count. */
-						}
-					}
-				}
-			}
+			for (int i=1 ; i<rowCount-1 ; i++) surroundedCount += countSurroundedCells(grid, i, isSurroundedBoth); 
 			surroundedCellMeasure = - surroundedCount ; 
 		} else { 
 			surroundedCellMeasure = 0.0 ; // Does not contribute. 
@@ -173,10 +239,127 @@ public class UsualQualityMeasure implements QualityMeasure {
 			needCrossingsMeasure = 0.0 ; // Does not contribute. 
 		}
 		//////  Compute favour-centre measure 
+		double favourCentreMeasure = computeFavourCentreMeasure(grid); 
+		//////  Combine measures
+		double quality = 
+				wordLengthsMeasure * lengthsFactor + 
+				pendingLengthsMeasure * pendingFactor + 
+				fullSpanMeasure * fullSpanFactor + 
+				symSpanMeasure * symSpanFactor + 
+				crossedCellsMeasure * crossingsFactor + 
+				surroundedCellMeasure * surroundedFactor + 
+				needCrossingsMeasure * needinessFactor + 
+				favourCentreMeasure + 
+				0 ; 
+		return quality ; 
+	}
+	
+	/**
+	 * Bounds each part of the quality separately, from the grid's {@link GridTally}, without placing the word. 
+	 * <ul>
+	 * <li>Word lengths, crossings, the new word's neediness and its edge penalty change by exactly what the word adds. 
+	 * <li>Each word the new word crosses has its neediness computed as it would be with that letter crossed. 
+	 * <li>The spans of the word's own line, and of the lines across the empty cells it fills, are measured as they would be. 
+	 *     (If the word was the last of the longest pending length, spans will be shorter than that, which a bound allows.) 
+	 * <li>Pending lengths over the longest gap: the gap can only shrink, so the only length which can leave the sum is the word's own. 
+	 * <li>Surrounded cells: filling cells can only make more cells surrounded, except the crossed cells, which can leave the count. 
+	 * </ul>
+	 * All but the last two are exact, so the bound is usually the quality itself, give or take {@link #boundMargin}. 
+	 * Negative factors would turn these bounds around, so with any of those there is no bound. 
+	 */
+	@Override
+	public double boundQualityAfterPlacement(Grid grid, double gridQuality, String word, int row, int column, boolean isAcross) { 
+		if (!isBoundable) return Double.POSITIVE_INFINITY ; 
+		GridTally tally = grid.getTally(); 
+		int longestPendingLength = grid.getLongestPendingLength(); 
+		if (tally.spansLongestPendingLength!=longestPendingLength) return Double.POSITIVE_INFINITY ; 
+		final int rowCount = grid.rowCount ; 
+		final int wordLength = word.length(); 
+		boolean isSpanned = fullSpanFactor!=0 || symSpanFactor!=0 ; 
+		int [] spanMeasures = isSpanned ? new int[2] : null ; 
+		int fullSpansGain = 0 ; 
+		int symSpansGain = 0 ; 
+		int crossingCount = 0 ; 
+		double needyLetters = 0 ; 
+		double crossedNeedinessGain = 0 ; 
+		//////  The word's cells, and the lines across them
+		int i = row ; 
+		int j = column ; 
+		for (int x=0 ; x<wordLength ; x++) { 
+			if (grid.hasLetter(i, j)) { 
+				crossingCount ++ ; 
+				if (needinessFactor!=0) crossedNeedinessGain += computeCrossedNeedinessGain(grid, tally, i, j, !isAcross); 
+			} else { 
+				needyLetters += 2 * (wordLength-x) / (double)wordLength ; 
+				if (isSpanned) { 
+					int line = isAcross ? rowCount+j : i ; 
+					if (isAcross) computeSpaceMeasures(spanMeasures, grid, grid.cellIndex(0, j), grid.stride, rowCount, longestPendingLength, i, i+1); 
+					else computeSpaceMeasures(spanMeasures, grid, grid.cellIndex(i, 0), 1, grid.columnCount, longestPendingLength, j, j+1); 
+					fullSpansGain += spanMeasures[0] - tally.lineFullSpans[line] ; 
+					symSpansGain += spanMeasures[1] - tally.lineSymmetricSpans[line] ; 
+				}
+			}
+			if (isAcross) j++ ; else i++ ; 
+		}
+		//////  The word's own line
+		if (isSpanned) { 
+			int line = isAcross ? row : rowCount+column ; 
+			if (isAcross) computeSpaceMeasures(spanMeasures, grid, grid.cellIndex(row, 0), 1, grid.columnCount, longestPendingLength, column, column+wordLength); 
+			else computeSpaceMeasures(spanMeasures, grid, grid.cellIndex(0, column), grid.stride, rowCount, longestPendingLength, row, row+wordLength); 
+			fullSpansGain += spanMeasures[0] - tally.lineFullSpans[line] ; 
+			symSpansGain += spanMeasures[1] - tally.lineSymmetricSpans[line] ; 
+		}
+		//////  Combine the gains
+		int pendingGain = (pendingFactor!=0 && wordLength>tally.getLongestGapLength()) ? wordLength : 0 ; 
+		double newWordNeediness = needyLetters * wordLength / (crossingCount+virginFactor) ; 
+		double bound = gridQuality + 
+				wordLength * lengthsFactor + 
+				pendingGain * pendingFactor + 
+				fullSpansGain * fullSpanFactor + 
+				symSpansGain * symSpanFactor + 
+				crossingCount * crossingsFactor + 
+				crossingCount * surroundedFactor + 
+				(crossedNeedinessGain - newWordNeediness) * needinessFactor - 
+				getEdgePenalty(grid, row, column, isAcross) ; 
+		return bound + boundMargin * (1 + Math.abs(bound)) ; 
+	}
+	
+	/**
+	 * How much less needy the word going the given way through the cell would be, with that cell crossed. 
+	 */
+	private double computeCrossedNeedinessGain(Grid grid, GridTally tally, int row, int column, boolean isAcross) { 
+		int index = GridTally.findWord(grid.placedWordList, tally.wordCount, row, column, isAcross); 
+		PlacedWord placedWord = grid.placedWordList.get(index); 
+		if (!placedWord.isPuzzleWord) return 0 ; // Neediness is zero. 
+		int length = placedWord.word.length() ; 
+		int letterIndex = isAcross ? column-placedWord.column : row-placedWord.row ; 
+		double needyLetters = tally.wordNeedyLetters[index] ; 
+		int crossed = tally.wordCrossedCounts[index] ; 
+		double needinessBefore = needyLetters * length / (crossed+virginFactor) ; 
+		double needinessAfter = (needyLetters - 2 * (length-letterIndex) / (double)length) * length / (crossed+1+virginFactor) ; 
+		return needinessBefore - needinessAfter ; 
+	}
+
+	/**
+	 * Sum of the lengths of pending words too long for the longest gap. 
+	 */
+	private static int sumPendingLengthsOverGap(Grid grid, int longestGapLength) { 
+		int sum = 0 ; 
+		List<String> pendingWords = grid.getPendingWords();
+		for (int i=pendingWords.size()-1 ; i>=0 ; i--) { // From longest to shortest
+			String pendingWord = pendingWords.get(i); 
+			int length = pendingWord.length(); 
+			if (length<=longestGapLength) break ; 
+			sum += length ; 
+		}
+		return sum ; 
+	}
+
+	private double computeFavourCentreMeasure(Grid grid) { 
 		double favourCentreMeasure = 0 ; 
 		if (edgePenalties!=null && edgePenalties.length!=0) { 
 			int epLength = edgePenalties.length ; 
-			for (PlacedWord placedWord : placedWordList) { 
+			for (PlacedWord placedWord : grid.placedWordList) { 
 				if (placedWord.isAcross) { 
 					int dimensionLength = grid.rowCount ; 
 					int coord = placedWord.row ; 
@@ -192,26 +375,89 @@ public class UsualQualityMeasure implements QualityMeasure {
 				}
 			}
 		}
-		//////  Combine measures
-		double quality = 
-				wordLengthsMeasure * lengthsFactor + 
-				pendingLengthsMeasure * pendingFactor + 
-				fullSpanMeasure * fullSpanFactor + 
-				symSpanMeasure * symSpanFactor + 
-				crossedCellsMeasure * crossingsFactor + 
-				surroundedCellMeasure * surroundedFactor + 
-				needCrossingsMeasure * needinessFactor + 
-				favourCentreMeasure + 
-				0 ; 
-		return quality ; 
+		return favourCentreMeasure ; 
 	}
 	
-	private boolean isFree(Cell[][] rows, int i, int j) {
+	/**
+	 * The penalty {@link #computeFavourCentreMeasure(Grid)} gives one word. 
+	 */
+	private double getEdgePenalty(Grid grid, int row, int column, boolean isAcross) { 
+		if (edgePenalties==null || edgePenalties.length==0) return 0 ; 
+		int epLength = edgePenalties.length ; 
+		int dimensionLength = isAcross ? grid.rowCount : grid.columnCount ; 
+		int coord = isAcross ? row : column ; 
+		int invCoord = dimensionLength - coord - 1 ; 
+		if (coord<epLength) return edgePenalties[coord] ; 
+		if (invCoord<epLength) return edgePenalties[invCoord] ; 
+		return 0 ; 
+	}
+
+	/**
+	 * Full and symmetric span measures summed over every row and column. 
+	 * Index 0 is full span measure, index 1 is symmetric span measure. 
+	 */
+	private static double [] scanSpaceMeasures(Grid grid) { 
+		double [] spanMeasures = new double[2] ; 
+		int [] lineMeasures = new int[2] ; 
+		int longestPendingLength = grid.getLongestPendingLength(); 
+		for (int i=0 ; i<grid.rowCount ; i++) { 
+			computeSpaceMeasures(lineMeasures, grid, grid.cellIndex(i, 0), 1, grid.columnCount, longestPendingLength); 
+			spanMeasures[0] += lineMeasures[0] ; 
+			spanMeasures[1] += lineMeasures[1] ; 
+		}
+		for (int j=0 ; j<grid.columnCount ; j++) { 
+			computeSpaceMeasures(lineMeasures, grid, grid.cellIndex(0, j), grid.stride, grid.rowCount, longestPendingLength); 
+			spanMeasures[0] += lineMeasures[0] ; 
+			spanMeasures[1] += lineMeasures[1] ; 
+		}
+		return spanMeasures ; 
+	}
+
+	/**
+	 * Counts cells in the row which are too difficult to cross. 
+	 * That is, they are filled but not crossed, and have parallel words on one side (or both sides). 
+	 */
+	static int countSurroundedCells(Grid grid, int i, boolean isSurroundedBoth) { 
+		int surroundedCount = 0 ; 
+		for (int j=0 ; j<grid.columnCount ; j++) { 
+			boolean isInAcross = grid.isInAcross(i, j) ; 
+			boolean isInDown = grid.isInDown(i, j) ; 
+			if( isInAcross) { 
+				if (isInDown) { 
+					/* Here we know: Cell is crossed both ways. Is not in surrounded-count. */
+				} else { 
+					/* Here we know: Cell is in an across-word only. */
+					boolean isAboveFree = isFree(grid, i, j-1);
+					boolean isBelowFree = isFree(grid, i, j+1);
+					if (isSurroundedBoth) { 
+						if (!isAboveFree && !isBelowFree) surroundedCount ++ ; 
+					} else { 
+						if (!isAboveFree || !isBelowFree) surroundedCount ++ ; 
+					}
+				}
+			} else { 
+				if (isInDown) { 
+					/* Here we know: Cell is in a down-word only. */
+					boolean isLeftFree = isFree(grid, i-1, j);
+					boolean isRightFree = isFree(grid, i+1, j);
+					if (isSurroundedBoth) { 
+						if (!isLeftFree && !isRightFree) surroundedCount ++ ; 
+					} else { 
+						if (!isLeftFree || !isRightFree) surroundedCount ++ ; 
+					}
+				} else { 
+					/* Here we know: Cell is not in a word. Is not in surrounded-count. */
+				}
+			}
+		}
+		return surroundedCount ; 
+	}
+	
+	private static boolean isFree(Grid grid, int i, int j) {
 		if (i<0 || j<0) return false ; 
-		if (i>=rows.length) return false ; 
-		Cell [] row = rows[i] ; 
-		if (j>=row.length) return false ; 
-		if (row[j].hasLetter()) return false ; 
+		if (i>=grid.rowCount) return false ; 
+		if (j>=grid.columnCount) return false ; 
+		if (grid.hasLetter(i, j)) return false ; 
 		return true;
 	}
 	
@@ -224,8 +470,7 @@ public class UsualQualityMeasure implements QualityMeasure {
 		double needyLetters = 0 ; 
 		int crossed = 0 ; 
 		for (int i=0 ; i<length ; i++) { 
-			Cell cell = grid.columns[column][row];
-			boolean isCellCrossed = cell.isInAcross && cell.isInDown ; 
+			boolean isCellCrossed = grid.isCrossingCell(row, column) ; 
 			if (isCellCrossed) crossed ++ ; 
 			if (!isCellCrossed) needyLetters += 2 * (length-i) / (double)length ; 
 			if (isAcross) column++ ; else row ++ ;  
@@ -240,15 +485,31 @@ public class UsualQualityMeasure implements QualityMeasure {
 	 * Each place is scored according to how long the word is. Words shorter than 'uselessLength' are not counted. 
 	 * 
 	 * @param measures Returns the measures. Index 0 is the full-span measure, index 1 is the symmetric-span measure. 
+	 * @param start Cell-index of the first cell in the line. 
+	 * @param step Difference in cell-index between adjacent cells in the line. 
+	 * @param longestPendingLength Spans are not counted past this length. 
 	 */
-	private void computeSpaceMeasures(double [] measures, Grid grid, Cell[] line) { 
-		int lineLength = line.length;
+	static void computeSpaceMeasures(int [] measures, Grid grid, int start, int step, int lineLength, int longestPendingLength) { 
+		computeSpaceMeasures(measures, grid, start, step, lineLength, longestPendingLength, 0, 0); 
+	}
+	
+	/**
+	 * Like {@link #computeSpaceMeasures(int[], Grid, int, int, int, int)}, as if some of the line's cells had letters. 
+	 * 
+	 * @param filledFrom Index in the line of the first cell taken to have a letter. 
+	 * @param filledTo Index in the line after the last cell taken to have a letter. 
+	 */
+	private static void computeSpaceMeasures(int [] measures, Grid grid, int start, int step, int lineLength, int longestPendingLength, int filledFrom, int filledTo) { 
 		int fullSpansSum = 0 ; // Excludes scrappy little words - ie, <= deadSize
 		int symmetricSpansSum = 0 ; // Excludes scrappy little words - ie, <= deadSize, and shortens the spans to be symmetric around the crossing. 
 		int firstCrossing = 0 ; 
-		while (firstCrossing<lineLength && line[firstCrossing].ch!=space) firstCrossing ++ ; 
+		while (firstCrossing<lineLength && isFilled(grid, start, step, firstCrossing, filledFrom, filledTo)) firstCrossing ++ ; 
 		/* Here we know: 'firstCrossing' is the index of the first filled cell in the line, or if there are no cells, is the line length. */ 
-		if (firstCrossing==lineLength) return ; // Measures are zero if there are no words to cross. 
+		if (firstCrossing==lineLength) { 
+			measures[0] = 0 ; // Measures are zero if there are no words to cross. 
+			measures[1] = 0 ; 
+			return ; 
+		}
 		int wordStart = 0 ; 
 		int secondCrossing_maybe = firstCrossing + 1 ; 
 		/* Here we know: Beginning (inclusive) at wordStart, firstCrossing is the first filled cell. */
@@ -257,7 +518,7 @@ public class UsualQualityMeasure implements QualityMeasure {
 		while (secondCrossing_maybe<lineLength) { 
 			//////  Find span covering the filled cell at firstCrossing. 
 			/* Here we know: Invariant "secondCrossing_maybe" is true. */
-			while (secondCrossing_maybe<lineLength && line[secondCrossing_maybe].ch==space) { 
+			while (secondCrossing_maybe<lineLength && !isFilled(grid, start, step, secondCrossing_maybe, filledFrom, filledTo)) { 
 				secondCrossing_maybe ++ ; 
 				/* Here we know: Assertion "current-span" is true. */
 			}
@@ -267,30 +528,34 @@ public class UsualQualityMeasure implements QualityMeasure {
 			 * But from 'wordStart' to 'secondCrossing_maybe' either crosses two filled cells, or goes off the edge of the grid. 
 			 */
 			//////  Update the measure statistics. 
-			fullSpansSum += computeFullSpanMeasure(grid, wordStart, secondCrossing_maybe-1) ;
-			symmetricSpansSum += computeSymmetricSpanMeasure(grid, wordStart, firstCrossing, secondCrossing_maybe-1) ;
+			fullSpansSum += computeFullSpanMeasure(longestPendingLength, wordStart, secondCrossing_maybe-1) ;
+			symmetricSpansSum += computeSymmetricSpanMeasure(longestPendingLength, wordStart, firstCrossing, secondCrossing_maybe-1) ;
 			//////  Advance variables for next iteration. 
 			wordStart = firstCrossing + 1 ; 
 			firstCrossing = secondCrossing_maybe ; 
 			secondCrossing_maybe = firstCrossing + 1 ; 
 		}
-		fullSpansSum += computeFullSpanMeasure(grid, wordStart, secondCrossing_maybe-1) ; // Adding in last span on line
-		symmetricSpansSum += computeSymmetricSpanMeasure(grid, wordStart, firstCrossing, secondCrossing_maybe-1) ; // Adding in last span on line
+		fullSpansSum += computeFullSpanMeasure(longestPendingLength, wordStart, secondCrossing_maybe-1) ; // Adding in last span on line
+		symmetricSpansSum += computeSymmetricSpanMeasure(longestPendingLength, wordStart, firstCrossing, secondCrossing_maybe-1) ; // Adding in last span on line
 		//////  Bye bye 
-		measures[0] += fullSpansSum ; 
-		measures[1] += symmetricSpansSum ; 
+		measures[0] = fullSpansSum ; 
+		measures[1] = symmetricSpansSum ; 
+	}
+
+	private static boolean isFilled(Grid grid, int start, int step, int index, int filledFrom, int filledTo) { 
+		return (index>=filledFrom && index<filledTo) || grid.getCharAt(start+index*step)!=space ; 
 	}
 
-	private int computeFullSpanMeasure(Grid grid, int spanStart, int spanEnd) { 
+	private static int computeFullSpanMeasure(int longestPendingLength, int spanStart, int spanEnd) { 
 		int spanLength = spanEnd - spanStart + 1 ; 
-		int spanMeasure = Math.min(spanLength, grid.getLongestPendingLength()); 
+		int spanMeasure = Math.min(spanLength, longestPendingLength); 
 		if (spanMeasure<0) spanMeasure = 0 ;
 		return spanMeasure;
 	} 
 	
-	private int computeSymmetricSpanMeasure(Grid grid, int spanStart, int crossing, int spanEnd) { 
+	private static int computeSymmetricSpanMeasure(int longestPendingLength, int spanStart, int crossing, int spanEnd) { 
 		int spanLength = Math.min(crossing-spanStart, spanEnd-crossing) * 2 + 1 ; 
-		int spanMeasure = Math.min(spanLength, grid.getLongestPendingLength()); 
+		int spanMeasure = Math.min(spanLength, longestPendingLength); 
 		if (spanMeasure<0) spanMeasure = 0 ;
 		return spanMeasure;
 	} 
@@ -1,15 +1,26 @@
 package com.gingerdroids.crossword;
 
+import java.io.BufferedOutputStream;
 import java.io.BufferedReader;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
 import java.io.File;
 import java.io.FileInputStream;
 import java.io.FileNotFoundException;
+import java.io.FileOutputStream;
 import java.io.FileReader;
 import java.io.FilenameFilter;
 import java.io.IOException;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Collection;
+import java.util.Collections;
 import java.util.Comparator;
 import java.util.HashMap;
 import java.util.HashSet;
@@ -26,7 +37,7 @@ import com.gingerdroids.utils_java.Str;
 /**
  * Holds the words from a dictionary. 
  * <p>
- * The data structure allows access by given-letter in given-position. 
+ * The data structure allows access by given-letter in given-position, so words matching a pattern of known and unknown letters are found without scanning. 
  * <p>
  * You may find the English Open Word List website useful. 
  * 
@@ -34,46 +45,285 @@ import com.gingerdroids.utils_java.Str;
  */
 public class WordBank { 
 	
-	private static final int maxWordLength = 10 ; 
+	/**
+	 * Words longer than this are left out when loading. 
+	 * May be changed before loading (eg, for bigger grids). 
+	 * A word-bank keeps the value it was loaded with. 
+	 */
+	public static int maxWordLengthForLoading = 21 ; 
 
 	private static final int maxChar = 128;
 
-	private static IndexedWord[] emptyArray = new IndexedWord[]{};
+	/**
+	 * Stands for an unknown letter in a pattern. 
+	 */
+	public static final char wildcard = '?' ; 
+
+	private static final int [] emptyIds = new int[0] ; 
+
+	private final int maxWordLength ; 
+
+	/**
+	 * Letters of all the words, one byte each, with no separators. 
+	 * The words of each length are together, starting at {@link #lengthOffsets}, in order of id. 
+	 * A word's id is its index among the words of its length, so ids are only unique within a length. 
+	 */
+	private final byte [] letters ; 
+
+	/**
+	 * Indexed by length. 
+	 */
+	private final int [] lengthOffsets ; 
+
+	/**
+	 * Indexed by length. 
+	 */
+	private final int [] wordCounts ; 
+
+	/**
+	 * Ids of the words with a given letter in a given position, in ascending order. Indexed by length, position, and letter. 
+	 */
+	private final int [][][][] idsByPositionLetter ; 
 	
-	private IndexedWord [][][] wordArrays = new IndexedWord[maxChar][maxWordLength+1][]; 
+	/**
+	 * See {@link #getContentHash()}. Zero until computed. 
+	 */
+	private long contentHash ; 
 	
+	/**
+	 * Words longer than {@link #maxWordLengthForLoading}, or with letters outside ASCII, are left out. 
+	 */
 	private WordBank(String [] allWords) { 
-		IndexedWordList [][] tmpLists = new IndexedWordList[maxChar][maxWordLength+1]; 
-		for (int i=' ' ; i<'z' ; i++) for (int j=1 ; j<=maxWordLength ; j++) tmpLists[i][j] = new IndexedWordList(); 
+		this.maxWordLength = maxWordLengthForLoading ; 
+		//////  Give the words ids, keeping their order 
+		this.wordCounts = new int[maxWordLength+1] ; 
+		for (String word : allWords) { 
+			if (isWordStorable(word)) wordCounts[word.length()] ++ ; 
+		}
+		this.lengthOffsets = computeLengthOffsets(wordCounts); 
+		this.letters = new byte[lengthOffsets[maxWordLength]+wordCounts[maxWordLength]*maxWordLength] ; 
+		int [] nextOffsets = lengthOffsets.clone(); 
 		for (String word : allWords) { 
+			if (!isWordStorable(word)) continue ; 
 			int wordLength = word.length(); 
-			if (wordLength>maxWordLength) continue ; 
-			for (int index=0 ; index<wordLength ; index++) { 
-				tmpLists[word.charAt(index)][wordLength].add(new IndexedWord(word, index)); 
-			}
+			int offset = nextOffsets[wordLength] ; 
+			for (int i=0 ; i<wordLength ; i++) letters[offset+i] = (byte) word.charAt(i) ; 
+			nextOffsets[wordLength] = offset + wordLength ; 
+		}
+		this.idsByPositionLetter = new int[maxWordLength+1][][][] ; 
+		indexWords(); 
+	}
+	
+	private WordBank(int maxWordLength, int [] wordCounts, byte [] letters, int [][][][] idsByPositionLetter) { 
+		this.maxWordLength = maxWordLength ; 
+		this.wordCounts = wordCounts ; 
+		this.lengthOffsets = computeLengthOffsets(wordCounts); 
+		this.letters = letters ; 
+		this.idsByPositionLetter = idsByPositionLetter ; 
+	}
+	
+	private boolean isWordStorable(String word) { 
+		if (word.length()>maxWordLength) return false ; 
+		return isWordSimpleAscii(word); 
+	}
+	
+	private static int [] computeLengthOffsets(int [] wordCounts) { 
+		int [] offsets = new int[wordCounts.length] ; 
+		int offset = 0 ; 
+		for (int length=0 ; length<wordCounts.length ; length++) { 
+			offsets[length] = offset ; 
+			offset += wordCounts[length] * length ; 
 		}
-		for (int i=' ' ; i<'z' ; i++) { 
-			for (int j=1 ; j<=maxWordLength ; j++) { 
-				IndexedWordList list = tmpLists[i][j]; 
-				IndexedWord [] array ; 
-				if (list.isEmpty()) { 
-					array = emptyArray; 
-				} else { 
-					array = new IndexedWord[list.size()] ; 
-					list.toArray(array); 
+		return offsets ; 
+	}
+	
+	/**
+	 * Builds {@link #idsByPositionLetter} from {@link #letters}. 
+	 */
+	private void indexWords() { 
+		for (int length=0 ; length<=maxWordLength ; length++) { 
+			int wordCount = wordCounts[length] ; 
+			int lengthOffset = lengthOffsets[length] ; 
+			int [][][] byPosition = new int[length][][] ; 
+			for (int position=0 ; position<length ; position++) { 
+				int [] letterCounts = new int[maxChar] ; 
+				for (int id=0, offset=lengthOffset+position ; id<wordCount ; id++, offset+=length) letterCounts[letters[offset]] ++ ; 
+				int [][] byLetter = new int[maxChar][] ; 
+				for (int letter=0 ; letter<maxChar ; letter++) { 
+					byLetter[letter] = letterCounts[letter]==0 ? emptyIds : new int[letterCounts[letter]] ; 
+					letterCounts[letter] = 0 ; 
 				}
-				wordArrays[i][j] = array ; 
+				for (int id=0, offset=lengthOffset+position ; id<wordCount ; id++, offset+=length) { 
+					byte letter = letters[offset] ; 
+					byLetter[letter][letterCounts[letter]++] = id ; 
+				}
+				byPosition[position] = byLetter ; 
 			}
+			idsByPositionLetter[length] = byPosition ; 
+		}
+	}
+	
+	/**
+	 * A 64-bit hash of the words, so results built with this word-bank can be told from results built with another. 
+	 * Word-banks with the same words in the same order have the same hash, however they were loaded. 
+	 */
+	public long getContentHash() { 
+		if (contentHash==0) { 
+			long hash = maxWordLength ; 
+			for (int count : wordCounts) hash = hash * 31 + count ; 
+			for (byte letter : letters) hash = hash * 31 + letter ; 
+			this.contentHash = (hash==0) ? 1 : hash ; 
 		}
+		return contentHash ; 
+	}
+	
+	public int getMaxWordLength() { 
+		return maxWordLength ; 
+	}
+	
+	public int getWordCount(int length) { 
+		if (length>maxWordLength) return 0 ; 
+		return wordCounts[length] ; 
 	}
 	
 	/**
-	 * Returns all words which have the given letter, and are the given length. 
-	 * If a word has the letter twice, it will appear in the returned array twice, with different <code>index</code> values. 
+	 * Returns a new {@link String} of the word. Use {@link #getLetter(int, int, int)} to avoid creating it. 
 	 */
-	public IndexedWord [] getWords(char letter, int length) { 
-		if (length>maxWordLength) return emptyArray ; 
-		return wordArrays[letter][length] ; 
+	public String getWord(int length, int id) { 
+		return new String(letters, lengthOffsets[length]+id*length, length, StandardCharsets.ISO_8859_1); 
+	}
+	
+	public char getLetter(int length, int id, int position) { 
+		return (char) letters[lengthOffsets[length]+id*length+position] ; 
+	}
+	
+	/**
+	 * Returns the ids of the words which match the pattern, in ascending order. 
+	 * The pattern has a letter, or {@link #wildcard}, for each letter of the word. Eg, <code>?A??E</code>. 
+	 * <p>
+	 * The lists of ids for each known letter are intersected, shortest first. 
+	 */
+	public int [] getWordIds(CharSequence pattern) { 
+		return getWordIds(pattern, 0, pattern.length()); 
+	}
+	
+	/**
+	 * Like {@link #getWordIds(CharSequence)}, for the part of the pattern from <code>start</code> with the given length. 
+	 */
+	private int [] getWordIds(CharSequence pattern, int start, int length) { 
+		if (length>maxWordLength) return emptyIds ; 
+		int [][][] byPosition = idsByPositionLetter[length] ; 
+		//////  Find the lists of ids for the known letters 
+		int [][] lists = new int[length][] ; 
+		int listCount = 0 ; 
+		for (int position=0 ; position<length ; position++) { 
+			char letter = pattern.charAt(start+position); 
+			if (letter==wildcard) continue ; 
+			if (letter>=maxChar) return emptyIds ; 
+			int [] ids = byPosition[position][letter] ; 
+			if (ids.length==0) return emptyIds ; 
+			lists[listCount++] = ids ; 
+		}
+		if (listCount==0) { 
+			/* No known letters. All words match. */
+			int [] allIds = new int[wordCounts[length]] ; 
+			for (int id=0 ; id<allIds.length ; id++) allIds[id] = id ; 
+			return allIds ; 
+		}
+		//////  Intersect them, shortest first 
+		Arrays.sort(lists, 0, listCount, new Comparator<int[]>() { 
+			@Override
+			public int compare(int[] a, int[] b) { 
+				return Integer.compare(a.length, b.length); 
+			}
+		}); 
+		int [] result = lists[0] ; 
+		int resultCount = result.length ; 
+		for (int i=1 ; i<listCount && resultCount>0 ; i++) { 
+			int [] ids = lists[i] ; 
+			int [] intersection = (result==lists[0]) ? new int[resultCount] : result ; // Intersect in place, once it's our own array. 
+			int count = 0 ; 
+			int k = 0 ; 
+			for (int j=0 ; j<resultCount ; j++) { 
+				int id = result[j] ; 
+				while (k<ids.length && ids[k]<id) k ++ ; 
+				if (k==ids.length) break ; 
+				if (ids[k]==id) intersection[count++] = id ; 
+			}
+			result = intersection ; 
+			resultCount = count ; 
+		}
+		if (result==lists[0]) return result.clone(); 
+		return Arrays.copyOf(result, resultCount); 
+	}
+	
+	/**
+	 * Finds the words which fit in a line of cells. 
+	 * 
+	 * @param line A letter, or {@link #wildcard}, for each cell in the line. 
+	 * @param length Length of the words. 
+	 * @param minStart Earliest position in the line where a word may start. 
+	 * @param maxStart Latest position in the line where a word may start. Words must also end within the line. 
+	 * @return The matches, in order of word id, and of each word from its latest start to its earliest. 
+	 * (So, for any given cell of the line, its position within the word ascends.) 
+	 */
+	public PatternMatches findWords(CharSequence line, int length, int minStart, int maxStart) { 
+		if (minStart<0) minStart = 0 ; 
+		if (maxStart>line.length()-length) maxStart = line.length() - length ; 
+		if (length>maxWordLength || maxStart<minStart) return new PatternMatches(length, new long[0]); 
+		//////  Find the words at each start 
+		int [][] idsByStart = new int[maxStart-minStart+1][] ; 
+		int matchCount = 0 ; 
+		for (int start=minStart ; start<=maxStart ; start++) { 
+			int [] ids = getWordIds(line, start, length); 
+			idsByStart[start-minStart] = ids ; 
+			matchCount += ids.length ; 
+		}
+		//////  Order them by id, then latest start first 
+		long [] sortKeys = new long[matchCount] ; 
+		int i = 0 ; 
+		for (int start=minStart ; start<=maxStart ; start++) { 
+			for (int id : idsByStart[start-minStart]) sortKeys[i++] = ((long)id<<32) | (maxStart-start) ; 
+		}
+		Arrays.sort(sortKeys); 
+		for (int j=0 ; j<matchCount ; j++) { 
+			long key = sortKeys[j] ; 
+			sortKeys[j] = (key & 0xFFFFFFFF00000000L) | (maxStart-(int)key) ; 
+		}
+		return new PatternMatches(length, sortKeys); 
+	}
+	
+	/**
+	 * Result of {@link WordBank#findWords(CharSequence, int, int, int)}. 
+	 */
+	public class PatternMatches { 
+		
+		private final int length ; 
+		
+		/**
+		 * Word id in the high half, start in the low half. 
+		 */
+		private final long [] matches ; 
+		
+		private PatternMatches(int length, long [] matches) { 
+			this.length = length ; 
+			this.matches = matches ; 
+		}
+		
+		public int size() { 
+			return matches.length ; 
+		}
+		
+		public String getWord(int i) { 
+			return WordBank.this.getWord(length, (int)(matches[i]>>>32)); 
+		}
+		
+		/**
+		 * Position in the line of the word's first letter. 
+		 */
+		public int getStart(int i) { 
+			return (int) matches[i] ; 
+		}
 	}
 	
 	/**
@@ -85,20 +335,6 @@ public class WordBank {
 		return new WordBank(loadFile_HasHeader(file)) ; 
 	}
 
-	@SuppressWarnings("serial")
-	private class IndexedWordList extends ArrayList<IndexedWord> {} 
-	
-	static class IndexedWord { 
-		final String word ; 
-		final char letter ; 
-		final int index ; // Index of 'letter' in 'word'
-		private IndexedWord(String word, int index) { 
-			this.word = word ; 
-			this.letter = word.charAt(index); 
-			this.index = index ; 
-		}
-	}
-	
 	public static WordBank loadWordBank_EOWL(File wordBanksDir) throws IOException { 
 		//////  Find the folder with the EOWL corpus files. 
 		if (!wordBanksDir.exists()) { 
@@ -110,8 +346,6 @@ public class WordBank {
 			return null ; 
 		}
 		File corpusDir = findEowlCorpusDir(wordBanksDir); 
-		//////  Load the words from the corpus 
-		Set<String> wordSet = new HashSet<String>(); 
 		File [] corpusFiles = corpusDir.listFiles(new FilenameFilter() {
 			final String endStr = "words.txt" ; 
 			final int expectedNameLength = endStr.length()+2 ; 
@@ -126,12 +360,19 @@ public class WordBank {
 		if (corpusFiles.length!=alphabetLength) { 
 			System.err.println("Expected "+alphabetLength+" corpus files. Found "+corpusFiles.length+". But continuing regardless."); 
 		}
+		//////  Use the snapshot, if it was made from these files 
+		File exclusionFile = new File(wordBanksDir, "exclude.txt"); 
+		long sourceStamp = computeSourceStamp(corpusFiles, exclusionFile); 
+		File snapshotFile = new File(wordBanksDir, snapshotFilename); 
+		WordBank snapshotBank = loadSnapshot(snapshotFile, sourceStamp); 
+		if (snapshotBank!=null) return snapshotBank ; 
+		//////  Load the words from the corpus 
+		Set<String> wordSet = new HashSet<String>(); 
 		for (File file : corpusFiles) { 
 			String [] words = loadFile_EOWL(file); 
 			wordSet.addAll(Arrays.asList(words)); 
 		}
 		//////  Exclude words from 'exclude.txt'. 
-		File exclusionFile = new File(wordBanksDir, "exclude.txt"); 
 		if (exclusionFile.exists()) { 
 			String[] exclusionWords = loadFile_HasHeader(exclusionFile); 
 			wordSet.removeAll(Arrays.asList(exclusionWords)); 
@@ -139,9 +380,162 @@ public class WordBank {
 		//////  Build word-bank 
 		final String[] words = Str.toArray(wordSet);
 		WordBank wordBank = new WordBank(words); 
+		//////  Save it for next time 
+		try { 
+			wordBank.writeSnapshot(snapshotFile, sourceStamp); 
+		} catch (IOException e) { 
+			System.err.println("Could not write word-bank snapshot "+snapshotFile.getPath()+": "+e.getMessage()+". Continuing without it."); 
+		}
 		return wordBank ; 
 	}
 	
+	//////  Snapshots 
+	
+	/**
+	 * Name of the snapshot file {@link #loadWordBank_EOWL(File)} keeps in the word-banks folder. 
+	 * Delete it to force a rebuild, though it is rebuilt anyway whenever the corpus or exclusion files change. 
+	 */
+	public static final String snapshotFilename = "eowl.wordbank" ; 
+	
+	private static final int snapshotMagic = 0x57424e4b ; // "WBNK" 
+	
+	/**
+	 * Changed whenever the snapshot layout changes, so old snapshots are rebuilt rather than misread. 
+	 */
+	private static final int snapshotVersion = 1 ; 
+	
+	/**
+	 * Bytes before the words: magic, version, source stamp and max word length. 
+	 */
+	private static final int snapshotHeaderLength = 20 ; 
+	
+	/**
+	 * Returns a fingerprint of the files a word-bank is built from: their names, sizes and modification times. 
+	 * Missing files are included (as missing), so adding an exclusion file changes the fingerprint. 
+	 */
+	static long computeSourceStamp(File [] sourceFiles, File ... moreSourceFiles) { 
+		ArrayList<File> files = new ArrayList<File>(Arrays.asList(sourceFiles)); 
+		files.addAll(Arrays.asList(moreSourceFiles)); 
+		Collections.sort(files); 
+		long stamp = snapshotVersion ; 
+		for (File file : files) { 
+			stamp = stamp * 31 + file.getName().hashCode(); 
+			stamp = stamp * 31 + (file.exists() ? file.length() : -1); 
+			stamp = stamp * 31 + file.lastModified(); 
+		}
+		return stamp ; 
+	}
+	
+	/**
+	 * Writes the words and the index to a binary file, which {@link #loadSnapshot(File, long)} can read back in. 
+	 * The file is written under a temporary name and then moved into place, so a reader never sees half a snapshot. 
+	 * The temporary name is unique, so builds in separate JVMs can rewrite a stale snapshot at once ; the last to finish wins. 
+	 * If the write fails, the temporary file is deleted. 
+	 * <p>
+	 * Layout, all big-endian: magic, version, source stamp (a long), max word length; 
+	 * then for each length, the word count followed by the words' letters, one byte each, with no separators (all the words are the same length); 
+	 * then for each length, position and letter, the count of ids followed by the ids. 
+	 * 
+	 * @param sourceStamp From {@link #computeSourceStamp(File[], File...)}, to tell later whether the snapshot is stale. 
+	 */
+	public void writeSnapshot(File file, long sourceStamp) throws IOException { 
+		File tmpFile = File.createTempFile(file.getName(), ".tmp", file.getAbsoluteFile().getParentFile()); 
+		boolean isMoved = false ; 
+		try { 
+			DataOutputStream out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(tmpFile))); 
+			try { 
+				out.writeInt(snapshotMagic); 
+				out.writeInt(snapshotVersion); 
+				out.writeLong(sourceStamp); 
+				out.writeInt(maxWordLength); 
+				for (int length=0 ; length<=maxWordLength ; length++) { 
+					out.writeInt(wordCounts[length]); 
+					out.write(letters, lengthOffsets[length], wordCounts[length]*length); 
+				}
+				for (int length=0 ; length<=maxWordLength ; length++) { 
+					for (int position=0 ; position<length ; position++) { 
+						for (int letter=0 ; letter<maxChar ; letter++) { 
+							int [] ids = idsByPositionLetter[length][position][letter] ; 
+							out.writeInt(ids.length); 
+							for (int id : ids) out.writeInt(id); 
+						}
+					}
+				}
+			} finally { 
+				out.close(); 
+			}
+			Files.move(tmpFile.toPath(), file.toPath(), StandardCopyOption.REPLACE_EXISTING); 
+			isMoved = true ; 
+		} finally { 
+			if (!isMoved) tmpFile.delete(); 
+		}
+	}
+	
+	/**
+	 * Reads back a snapshot written by {@link #writeSnapshot(File, long)}. 
+	 * Returns null if there is no snapshot, or it was made from different source files, or by a different version of this code. 
+	 * <p>
+	 * The header is checked before the rest is read, so a stale snapshot costs one small read. 
+	 * The file is read, not memory-mapped: the words and index are copied into arrays anyway, 
+	 * and a mapped file stays open until the mapping is garbage-collected, which (on Windows) stops a stale snapshot being replaced. 
+	 */
+	public static WordBank loadSnapshot(File file, long sourceStamp) throws IOException { 
+		if (!file.isFile()) return null ; 
+		long fileLength = file.length(); 
+		if (fileLength<snapshotHeaderLength) return null ; 
+		if (fileLength>Integer.MAX_VALUE) return null ; // Far too big to be a snapshot. 
+		DataInputStream in = new DataInputStream(new FileInputStream(file)); 
+		try { 
+			//////  Header 
+			if (in.readInt()!=snapshotMagic) return null ; 
+			if (in.readInt()!=snapshotVersion) return null ; 
+			if (in.readLong()!=sourceStamp) return null ; 
+			int maxWordLength = in.readInt(); 
+			if (maxWordLength!=maxWordLengthForLoading) return null ; 
+			byte [] body = new byte[(int) fileLength-snapshotHeaderLength] ; 
+			in.readFully(body); 
+			ByteBuffer buffer = ByteBuffer.wrap(body); 
+			//////  Words 
+			int wordsPosition = buffer.position(); 
+			int [] wordCounts = new int[maxWordLength+1] ; 
+			int letterCount = 0 ; 
+			for (int length=0 ; length<=maxWordLength ; length++) { 
+				wordCounts[length] = buffer.getInt(); 
+				letterCount += wordCounts[length] * length ; 
+				buffer.position(buffer.position()+wordCounts[length]*length); 
+			}
+			byte [] letters = new byte[letterCount] ; 
+			buffer.position(wordsPosition); 
+			int offset = 0 ; 
+			for (int length=0 ; length<=maxWordLength ; length++) { 
+				buffer.getInt(); 
+				buffer.get(letters, offset, wordCounts[length]*length); 
+				offset += wordCounts[length]*length ; 
+			}
+			//////  Index 
+			int [][][][] idsByPositionLetter = new int[maxWordLength+1][][][] ; 
+			for (int length=0 ; length<=maxWordLength ; length++) { 
+				int [][][] byPosition = new int[length][maxChar][] ; 
+				for (int position=0 ; position<length ; position++) { 
+					for (int letter=0 ; letter<maxChar ; letter++) { 
+						int count = buffer.getInt(); 
+						int [] ids = (count==0) ? emptyIds : new int[count] ; 
+						buffer.asIntBuffer().get(ids); 
+						buffer.position(buffer.position()+4*count); 
+						byPosition[position][letter] = ids ; 
+					}
+				}
+				idsByPositionLetter[length] = byPosition ; 
+			}
+			return new WordBank(maxWordLength, wordCounts, letters, idsByPositionLetter); 
+		} catch (EOFException | BufferUnderflowException | IllegalArgumentException | NegativeArraySizeException e) { 
+			System.err.println("Word-bank snapshot "+file.getPath()+" is truncated or corrupt. Rebuilding it. ("+e+")"); 
+			return null ; 
+		} finally { 
+			in.close(); 
+		}
+	}
+	
 	private static File findEowlCorpusDir(File dir) { 
 		/* Oh, the joys of unzip and folders within folders. Not. */
 		File corpusDir = getSubdir(dir, "LF Delimited Format"); 
@@ -280,7 +674,7 @@ public class WordBank {
 	
 	private static boolean isWordAcceptable(String word) { 
 		int wordLength = word.length();
-		if (wordLength>maxWordLength) return false ; 
+		if (wordLength>maxWordLengthForLoading) return false ; 
 		if (wordLength>1) return true ; 
 		//// Some single letter words are OK. 
 		switch (word.charAt(0)) { 
@@ -0,0 +1,203 @@
+package com.gingerdroids.crossword.apps;
+
+import java.io.File;
+import java.io.FilenameFilter;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import org.blockframe.core.DebugLog;
+
+import com.gingerdroids.crossword.BuildMetrics;
+import com.gingerdroids.crossword.Builder;
+import com.gingerdroids.crossword.Crossword;
+import com.gingerdroids.crossword.CrosswordInput;
+import com.gingerdroids.crossword.ResultCache;
+import com.gingerdroids.crossword.WordBank;
+import com.gingerdroids.utils_java.Str;
+
+/**
+ * Builds crosswords, and writes their PDFs, for many clues-files in one go, without any windows. 
+ * <p>
+ * Usage: <code>BatchBuilder [-clueless] [-threads N] [-seconds N] [-metrics] [-wordbanks DIR] FILE-OR-FOLDER ...</code>
+ * <p>
+ * Each folder stands for all the <code>.txt</code> files in it. 
+ * The word-bank is loaded once, and shared by all the builds. 
+ * Several crosswords are built at once, each with its share of the processors (usually one), which keeps them busier than one build spread over them all. 
+ * The PDFs are written one at a time, because the PDF library keeps static state. 
+ * Grids already built for a puzzle, with the same settings, are read back from the {@link ResultCache} rather than built again. 
+ * With <code>-seconds</code>, each crossword's words are placed within about that time (see {@link Builder#millisDuringFlesh}). 
+ * With <code>-metrics</code>, each build's counts and times (see {@link BuildMetrics}) are written as JSON next to its PDFs. 
+ * <p>
+ * Reports the time taken for each crossword, and the overall throughput. 
+ * A crossword which fails is reported, and the others are carried on with. 
+ */
+public class BatchBuilder { 
+
+	/**
+	 * Whether to build clueless crosswords (see {@link PdfClueless}), rather than ones with clues (see {@link PdfCrossword}). 
+	 */
+	private final boolean isClueless ; 
+
+	/**
+	 * Whether to write each build's {@link BuildMetrics} as JSON. 
+	 */
+	private final boolean isWritingMetrics ; 
+
+	private final WordBank wordBank ; 
+
+	/**
+	 * Held while writing PDFs. 
+	 */
+	private final Object pdfLock = new Object(); 
+
+	BatchBuilder(boolean isClueless, boolean isWritingMetrics, WordBank wordBank) { 
+		this.isClueless = isClueless ; 
+		this.isWritingMetrics = isWritingMetrics ; 
+		this.wordBank = wordBank ; 
+	}
+
+	public static void main(String[] args) throws Exception { 
+		//////  Read the arguments
+		boolean isClueless = false ; 
+		boolean isWritingMetrics = false ; 
+		int threadCount = Runtime.getRuntime().availableProcessors(); 
+		File wordBanksDir = new File(new File(System.getProperty("user.home")), "word-banks"); 
+		List<File> cluesFiles = new ArrayList<File>(); 
+		for (int i=0 ; i<args.length ; i++) { 
+			String arg = args[i] ; 
+			if (arg.equals("-clueless")) { 
+				isClueless = true ; 
+			} else if (arg.equals("-threads") && i+1<args.length) { 
+				threadCount = Integer.parseInt(args[++i]); 
+			} else if (arg.equals("-metrics")) { 
+				isWritingMetrics = true ; 
+			} else if (arg.equals("-seconds") && i+1<args.length) { 
+				Builder.millisDuringFlesh = (long) (Double.parseDouble(args[++i]) * 1000) ; 
+			} else if (arg.equals("-wordbanks") && i+1<args.length) { 
+				wordBanksDir = new File(args[++i]); 
+			} else if (arg.startsWith("-")) { 
+				throw new RuntimeException("Unknown option "+arg+". Usage: BatchBuilder [-clueless] [-threads N] [-seconds N] [-metrics] [-wordbanks DIR] FILE-OR-FOLDER ..."); 
+			} else { 
+				addCluesFiles(new File(arg), cluesFiles); 
+			}
+		}
+		if (cluesFiles.isEmpty()) throw new RuntimeException("No clues-files given. Usage: BatchBuilder [-clueless] [-threads N] [-seconds N] [-metrics] [-wordbanks DIR] FILE-OR-FOLDER ..."); 
+		threadCount = Math.max(1, Math.min(threadCount, cluesFiles.size())); 
+		//////  Share the processors between the builds
+		int threadsPerBuild = Math.max(1, Runtime.getRuntime().availableProcessors()/threadCount); 
+		Builder.threadCountDuringFlesh = threadsPerBuild ; 
+		Builder.threadCountDuringCoat = threadsPerBuild ; 
+		if (threadCount>1) Builder.isPrintingProgress = false ; 
+		Builder.resultCacheDir = new File(wordBanksDir, ResultCache.folderName); 
+		//////  Load the word-bank, once
+		long startNanos = System.nanoTime(); 
+		WordBank wordBank = WordBank.loadWordBank_EOWL(wordBanksDir); // Be aware EOWL has copyright conditions.
+		System.out.println("Word-bank loaded in "+millisSince(startNanos)+" ms. Building "+cluesFiles.size()+" crosswords on "+threadCount+" threads."); 
+		//////  Build the crosswords
+		BatchBuilder batchBuilder = new BatchBuilder(isClueless, isWritingMetrics, wordBank); 
+		int failedCount = batchBuilder.buildAll(cluesFiles, threadCount); 
+		//////  Report throughput
+		long totalMillis = millisSince(startNanos); 
+		int builtCount = cluesFiles.size() - failedCount ; 
+		System.out.println(); 
+		System.out.println("Built "+builtCount+" of "+cluesFiles.size()+" crosswords in "+totalMillis+" ms: "+String.format("%.1f", builtCount*60000.0/Math.max(totalMillis, 1))+" per minute."); 
+		DebugLog.out(); 
+		if (failedCount>0) System.exit(1); 
+	}
+
+	/**
+	 * Adds the file, or the <code>.txt</code> files in the folder, in name order. 
+	 */
+	private static void addCluesFiles(File file, List<File> cluesFiles) { 
+		if (!file.exists()) throw new RuntimeException(file.getPath()+" does not exist."); 
+		if (!file.isDirectory()) { 
+			cluesFiles.add(file); 
+			return ; 
+		}
+		File [] dirFiles = file.listFiles(new FilenameFilter() { 
+			@Override
+			public boolean accept(File dir, String filename) { 
+				return filename.toLowerCase().endsWith(".txt"); 
+			}
+		}); 
+		Arrays.sort(dirFiles); 
+		cluesFiles.addAll(Arrays.asList(dirFiles)); 
+	}
+
+	/**
+	 * Builds each crossword on a pool of the given number of threads, reporting each as it finishes. 
+	 *
+	 * @return How many failed. 
+	 */
+	int buildAll(List<File> cluesFiles, int threadCount) throws InterruptedException { 
+		ExecutorService pool = Executors.newFixedThreadPool(threadCount); 
+		try { 
+			List<Future<?>> futures = new ArrayList<Future<?>>(); 
+			for (final File cluesFile : cluesFiles) { 
+				futures.add(pool.submit(new Runnable() { 
+					@Override
+					public void run() { 
+						try { 
+							build(cluesFile); 
+						} catch (IOException e) { 
+							throw new RuntimeException(e); 
+						}
+					}
+				})); 
+			}
+			int failedCount = 0 ; 
+			for (int i=0 ; i<futures.size() ; i++) { 
+				try { 
+					futures.get(i).get(); 
+				} catch (Exception e) { 
+					Throwable cause = (e.getCause()!=null) ? e.getCause() : e ; 
+					System.out.println(cluesFiles.get(i).getName()+":  FAILED  "+cause); 
+					failedCount ++ ; 
+				}
+			}
+			return failedCount ; 
+		} finally { 
+			pool.shutdown(); 
+		}
+	}
+
+	/**
+	 * Builds one crossword, and writes its PDFs next to its clues-file. 
+	 */
+	private void build(File cluesFile) throws IOException { 
+		long startNanos = System.nanoTime(); 
+		CrosswordInput crosswordInput = new CrosswordInput(cluesFile); 
+		Crossword [] crosswords ; 
+		if (isClueless) { 
+			crosswords = PdfClueless.buildBestCrosswords(crosswordInput, wordBank); 
+		} else { 
+			crosswords = new Crossword[] {PdfCrossword.buildCrossword(crosswordInput, wordBank)}; 
+		}
+		long buildMillis = millisSince(startNanos); 
+		long pdfMillis ; 
+		synchronized (pdfLock) { 
+			long pdfStartNanos = System.nanoTime(); 
+			if (isClueless) { 
+				PdfClueless.writePdfs(crosswords, crosswordInput, cluesFile); 
+			} else { 
+				PdfCrossword.writePdfs(crosswords[0], crosswordInput, cluesFile); 
+			}
+			if (isWritingMetrics && crosswords.length>0 && crosswords[0].buildMetrics!=null) { 
+				crosswords[0].buildMetrics.writeJson(new File(cluesFile.getAbsoluteFile().getParentFile(), Str.getFileBasename(cluesFile)+" metrics.json")); 
+			}
+			pdfMillis = millisSince(pdfStartNanos); 
+		}
+		long totalMillis = millisSince(startNanos); 
+		System.out.println(cluesFile.getName()+":  "+totalMillis+" ms  (build "+buildMillis+" ms, PDFs "+pdfMillis+" ms, "+crosswords.length+" crosswords)"); 
+	}
+
+	private static long millisSince(long startNanos) { 
+		return (System.nanoTime()-startNanos) / 1000000 ; 
+	}
+
+}
@@ -158,18 +158,18 @@ public class GridLines {
 			/* The border between columns 'column-1' and 'column', on the given row. */ 
 			if (column==0) { 
 				/* It's a table border, on the left. */
-				Cell rightCell = grid.rows[row][column] ; 
-				if (rightCell.hasLetter() /*&& rightCell.isPuzzleCell*/) return full/*leftEnd*/ ; 
+				Cell rightCell = grid.getCell(row, column) ; 
+				if (rightCell.hasLetter() /*&& rightCell.isPuzzleCell()*/) return full/*leftEnd*/ ; 
 				return none ; 
 			} else if (column==grid.columnCount) { 
 				/* It's a table border, on the right. */
-				Cell leftCell = grid.rows[row][column-1] ; 
-				if (leftCell.hasLetter() /*&& leftCell.isPuzzleCell*/) return full/*rightEnd*/ ; 
+				Cell leftCell = grid.getCell(row, column-1) ; 
+				if (leftCell.hasLetter() /*&& leftCell.isPuzzleCell()*/) return full/*rightEnd*/ ; 
 				return none ; 
 			} else { 
 				/* It's an internal border. */
-				Cell leftCell = grid.rows[row][column-1] ; 
-				Cell rightCell = grid.rows[row][column] ; 
+				Cell leftCell = grid.getCell(row, column-1) ; 
+				Cell rightCell = grid.getCell(row, column) ; 
 				if (leftCell.hasLetter()) { 
 					if (rightCell.hasLetter()) { 
 						/* Both cells have a letter */
@@ -177,18 +177,18 @@ public class GridLines {
 						String rightAcrossWord = acrossWords[row][column] ; 
 						if (leftAcrossWord==null || rightAcrossWord==null) return full ; 
 						if (leftAcrossWord==rightAcrossWord) { 
-							return leftCell.isPuzzleCell ? topAndBottom : none ; // Part of same word. 
+							return leftCell.isPuzzleCell() ? topAndBottom : none ; // Part of same word. 
 						} else { 
 							return full ; 
 						}
 					} else { 
 						/* Only the left cell has a letter. */
-						return leftCell.isPuzzleCell ? full/*rightEnd*/ : none ; 
+						return leftCell.isPuzzleCell() ? full/*rightEnd*/ : none ; 
 					}
 				} else { 
 					if (rightCell.hasLetter()) { 
 						/* Only the right cell has a letter. */
-						return rightCell.isPuzzleCell ? full/*leftEnd*/ : none ; 
+						return rightCell.isPuzzleCell() ? full/*leftEnd*/ : none ; 
 					} else { 
 						/* Neither cell has a letter. */
 						return none ; 
@@ -199,18 +199,18 @@ public class GridLines {
 			/* The border between rows 'row-1' and 'row', in the given column. */ 
 			if (row==0) { 
 				/* It's a table border, at the top. */
-				Cell lowerCell = grid.rows[row][column] ; 
-				if (lowerCell.hasLetter() /*&& lowerCell.isPuzzleCell*/) return full/*aboveEnd*/ ; 
+				Cell lowerCell = grid.getCell(row, column) ; 
+				if (lowerCell.hasLetter() /*&& lowerCell.isPuzzleCell()*/) return full/*aboveEnd*/ ; 
 				return none ; 
 			} else if (row==grid.rowCount) { 
 				/* It's a table border, at the bottom. */
-				Cell upperCell = grid.rows[row-1][column] ; 
-				if (upperCell.hasLetter() /*&& upperCell.isPuzzleCell*/) return full/*belowEnd*/ ; 
+				Cell upperCell = grid.getCell(row-1, column) ; 
+				if (upperCell.hasLetter() /*&& upperCell.isPuzzleCell()*/) return full/*belowEnd*/ ; 
 				return none ; 
 			} else { 
 				/* It's an internal border. */
-				Cell upperCell = grid.rows[row-1][column] ; 
-				Cell lowerCell = grid.rows[row][column] ; 
+				Cell upperCell = grid.getCell(row-1, column) ; 
+				Cell lowerCell = grid.getCell(row, column) ; 
 				if (upperCell.hasLetter()) { 
 					if (lowerCell.hasLetter()) { 
 						/* Both cells have a letter */
@@ -218,18 +218,18 @@ public class GridLines {
 						String lowerDownWord = downWords[row][column] ; 
 						if (upperDownWord==null || lowerDownWord==null) return full ; 
 						if (upperDownWord==lowerDownWord) { 
-							return upperCell.isPuzzleCell ? leftAndRight : none ; // Part of same word. 
+							return upperCell.isPuzzleCell() ? leftAndRight : none ; // Part of same word. 
 						} else { 
 							return full ; 
 						}
 					} else { 
 						/* Only the upper cell has a letter. */
-						return upperCell.isPuzzleCell ? full/*belowEnd*/ : none ; 
+						return upperCell.isPuzzleCell() ? full/*belowEnd*/ : none ; 
 					}
 				} else { 
 					if (lowerCell.hasLetter()) { 
 						/* Only the lower cell has a letter. */
-						return lowerCell.isPuzzleCell ? full/*aboveEnd*/ : none ; 
+						return lowerCell.isPuzzleCell() ? full/*aboveEnd*/ : none ; 
 					} else { 
 						/* Neither cell has a letter. */
 						return none ; 
@@ -5,6 +5,7 @@ import java.awt.Dimension;
 import java.io.File;
 import java.io.IOException;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Collection;
 import java.util.HashSet;
 import java.util.List;
@@ -37,6 +38,8 @@ import org.blockframe.core.Quill;
 import org.blockframe.examples.UtilsForExamples;
 import org.blockframe.painters.Scribe;
 
+import com.gingerdroids.crossword.Builder;
+import com.gingerdroids.crossword.ResultCache;
 import com.gingerdroids.crossword.apps.GridLines.CellBorderPainter;
 import com.gingerdroids.crossword.apps.PdfCrossword.TitleFrame;
 import com.gingerdroids.crossword.StandardBuilder;
@@ -74,10 +77,16 @@ private static final String answerWordsHardTitle = "Words in answers";
 
 	static String cluesFileName = null ; 
 	
+	/**
+	 * How many of the best crosswords are written out. 
+	 */
+	private static final int printCount = 8 ; 
+	
 	public static void main(String[] args) throws IOException { 
 		//////  Read the clues-file and word-banks
 		File homeDir = new File(System.getProperty("user.home")); 
 		File wordBanksDir = new File(homeDir, "word-banks"); 
+		Builder.resultCacheDir = new File(wordBanksDir, ResultCache.folderName); 
 		InteractiveFileGetter fileGetter = new InteractiveFileGetter() {
 			protected void configure(javax.swing.JFrame frame, javax.swing.JFileChooser chooser) {
 				frame.setPreferredSize(new Dimension(800, 800)); 
@@ -85,23 +94,12 @@ private static final String answerWordsHardTitle = "Words in answers";
 			};
 		};
 		File cluesFile = fileGetter.chooseFile(); 
-		File crosswordDir = cluesFile.getParentFile(); 
 		cluesFileName = cluesFile.getName(); 
 		WordBank wordBank = WordBank.loadWordBank_EOWL(wordBanksDir); // Be aware EOWL has copyright conditions. 
 		CrosswordInput crosswordInput = new CrosswordInput(cluesFile); 
 		//////  Build the crosswords - place the words in grids
-		Crossword [] allCrosswords = new CluelessBuilder(crosswordInput, wordBank, qualityMeasureFactory).buildCrosswords(); 
-		//////  Select best few crosswords 
-		final int printCount = 8 ; 
-		Crossword [] bestCrosswords = new Crossword[printCount] ; 
-		int outIndex = 0 ; 
-		for (Crossword crossword : allCrosswords) { 
-			if (crossword.grid.getPendingWords().isEmpty()) { 
-				bestCrosswords[outIndex] = crossword ; 
-				outIndex ++ ; 
-				if (outIndex>=printCount) break ; 
-			}
-		}
+		Crossword [] bestCrosswords = buildBestCrosswords(crosswordInput, wordBank); 
+		int outIndex = bestCrosswords.length ; 
 		
 		{}
 		//Build short array of crosswords to report fill-words from ; They should all be completely filled ; 
@@ -132,16 +130,40 @@ private static final String answerWordsHardTitle = "Words in answers";
 		System.out.println();
 		System.out.println("_____________");
 		//////  Write PDF files 
+		writePdfs(bestCrosswords, crosswordInput, cluesFile); 
+		//////  Bye bye 
+		DebugLog.out(); 
+	}
+	
+	/**
+	 * Builds the crosswords, and returns the best few which have all the puzzle words placed, best first. 
+	 */
+	static Crossword [] buildBestCrosswords(CrosswordInput crosswordInput, WordBank wordBank) throws IOException { 
+		Crossword [] allCrosswords = new CluelessBuilder(crosswordInput, wordBank, qualityMeasureFactory).buildCrosswords(); 
+		Crossword [] bestCrosswords = new Crossword[printCount] ; 
+		int outIndex = 0 ; 
+		for (Crossword crossword : allCrosswords) { 
+			if (crossword.grid.getPendingWords().isEmpty()) { 
+				bestCrosswords[outIndex] = crossword ; 
+				outIndex ++ ; 
+				if (outIndex>=printCount) break ; 
+			}
+		}
+		return Arrays.copyOf(bestCrosswords, outIndex); 
+	}
+	
+	/**
+	 * Writes the solution, easy and hard PDFs of each crossword, next to the clues-file. 
+	 */
+	static void writePdfs(Crossword [] crosswords, CrosswordInput crosswordInput, File cluesFile) throws IOException { 
+		File crosswordDir = cluesFile.getParentFile(); 
 		String cluesBasename = Str.getFileBasename(cluesFile); 
-		for (int i=0 ; i<outIndex ; i++) { 
-			Crossword crossword = bestCrosswords[i] ; 
-			if (crossword==null) continue ; 
+		for (int i=0 ; i<crosswords.length ; i++) { 
+			Crossword crossword = crosswords[i] ; 
 			new PdfClueless(crossword, crosswordInput, new File(crosswordDir, cluesBasename+" "+i+" soln.pdf"), TYPE_SOLUTION); 
 			new PdfClueless(crossword, crosswordInput, new File(crosswordDir, cluesBasename+" "+i+" easy.pdf"), TYPE_EASY); 
 			new PdfClueless(crossword, crosswordInput, new File(crosswordDir, cluesBasename+" "+i+" hard.pdf"), TYPE_HARD); 
 		}
-		//////  Bye bye 
-		DebugLog.out(); 
 	}
 	
 	public static void printWordsWithHeading(String heading, Collection<String> words) { 
@@ -351,7 +373,7 @@ private static final String answerWordsHardTitle = "Words in answers";
 
 		@Override
 		protected Block getCellBlock(int row, int column) { 
-			return new CellBlock(grid.rows[row][column]); 
+			return new CellBlock(grid.getCell(row, column)); 
 		}
 		
 		@Override
@@ -426,10 +448,10 @@ private static final String answerWordsHardTitle = "Words in answers";
 			
 			CellBlock(Cell cell) { 
 				this.cell = cell ; 
-				if ((gridType==TYPE_SOLUTION || !cell.isPuzzleCell) && cell.hasLetter()) { 
+				if ((gridType==TYPE_SOLUTION || !cell.isPuzzleCell()) && cell.hasLetter()) { 
 					letterBlock = new CellLetterBlock();
 				}
-				if (cell.wordNumber>0) { 
+				if (cell.getWordNumber()>0) { 
 					numberBlock = new CellNumberBlock();
 				}
 			}
@@ -473,11 +495,11 @@ private static final String answerWordsHardTitle = "Words in answers";
 			
 			class CellLetterBlock extends StringBlock {
 				public CellLetterBlock() {
-					super(String.valueOf(cell.ch));
+					super(String.valueOf(cell.getChar()));
 				} 
 				@Override
 				protected Quill inheritQuill(Quill receivedQuill) {
-					if (cell.isPuzzleCell) { 
+					if (cell.isPuzzleCell()) { 
 						return super.inheritQuill(receivedQuill);
 					} else { 
 						return super.inheritQuill(receivedQuill).copy(gridType==TYPE_SOLUTION?Color.LIGHT_GRAY:Color.DARK_GRAY); 
@@ -487,7 +509,7 @@ private static final String answerWordsHardTitle = "Words in answers";
 			
 			class CellNumberBlock extends StringBlock { 
 				public CellNumberBlock() {
-					super(String.valueOf(cell.wordNumber)); 
+					super(String.valueOf(cell.getWordNumber())); 
 				} 
 				@Override
 				protected Quill inheritQuill(Quill receivedQuill) { 
@@ -767,13 +789,13 @@ private static final String answerWordsHardTitle = "Words in answers";
 							fillerWord = placedWord ;  
 							if (fillerWord.isAcross) { 
 								for (int i=0 ; i<fillerWord.word.length() ; i++) { 
-									if (grid.rows[fillerWord.row][fillerWord.column+i].isPuzzleCell) { 
+									if (grid.getCell(fillerWord.row, fillerWord.column+i).isPuzzleCell()) { 
 										crossingPlacedWord = grid.getWordAt(fillerWord.row, fillerWord.column+i, !fillerWord.isAcross); 
 									}
 								}
 							} else { 
 								for (int i=0 ; i<fillerWord.word.length() ; i++) { 
-									if (grid.rows[fillerWord.row+i][fillerWord.column].isPuzzleCell) { 
+									if (grid.getCell(fillerWord.row+i, fillerWord.column).isPuzzleCell()) { 
 										crossingPlacedWord = grid.getWordAt(fillerWord.row+i, fillerWord.column, !fillerWord.isAcross); 
 									}
 								}
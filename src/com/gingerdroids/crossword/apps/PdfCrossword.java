@@ -31,6 +31,8 @@ import org.blockframe.core.Quill;
 import org.blockframe.examples.UtilsForExamples;
 import org.blockframe.painters.Scribe;
 
+import com.gingerdroids.crossword.Builder;
+import com.gingerdroids.crossword.ResultCache;
 import com.gingerdroids.crossword.apps.GridLines.CellBorderPainter;
 import com.gingerdroids.crossword.StandardBuilder;
 import com.gingerdroids.crossword.UsualQualityMeasure;
@@ -57,6 +59,7 @@ public class PdfCrossword extends PdfDocument {
 		//////  Read the clues-file and word-banks
 		File homeDir = new File(System.getProperty("user.home")); 
 		File wordBanksDir = new File(homeDir, "word-banks"); 
+		Builder.resultCacheDir = new File(wordBanksDir, ResultCache.folderName); 
 		InteractiveFileGetter cluesFileGetter = new InteractiveFileGetter() {
 			protected void configure(javax.swing.JFrame frame, javax.swing.JFileChooser chooser) {
 				frame.setPreferredSize(new Dimension(800, 800)); 
@@ -64,12 +67,11 @@ public class PdfCrossword extends PdfDocument {
 			};
 		};
 		File cluesFile = cluesFileGetter.chooseFile(); 
-		File crosswordDir = cluesFile.getParentFile(); 
 		cluesFileName = cluesFile.getName(); 
 		CrosswordInput crosswordInput = new CrosswordInput(cluesFile); 
 		WordBank wordBank = WordBank.loadWordBank_EOWL(wordBanksDir); // Be aware EOWL has copyright conditions. 
 		//////  Build the crossword - place the words in the grid
-		Crossword crossword = new StandardBuilder(crosswordInput, wordBank, qualityMeasureFactory).buildCrossword(); 
+		Crossword crossword = buildCrossword(crosswordInput, wordBank); 
 		//// Feedback to compositor 
 		{ 
 			HashSet<String> fillWordList = new HashSet<String>(); 
@@ -90,10 +92,8 @@ public class PdfCrossword extends PdfDocument {
 			System.out.println("_____________");
 		}
 		//////  Write out the PDFs
-		String cluesBasename = Str.getFileBasename(cluesFile); 
 		try { 
-			new PdfCrossword(crossword, crosswordInput, new File(crosswordDir, cluesBasename+" blank.pdf"), false); 
-			new PdfCrossword(crossword, crosswordInput, new File(crosswordDir, cluesBasename+" soln.pdf"), true); 
+			writePdfs(crossword, crosswordInput, cluesFile); 
 		} catch (Exception e) { 
 			throw e ; 
 		} finally { 
@@ -101,6 +101,20 @@ public class PdfCrossword extends PdfDocument {
 		}
 	}
 	
+	static Crossword buildCrossword(CrosswordInput crosswordInput, WordBank wordBank) throws IOException { 
+		return new StandardBuilder(crosswordInput, wordBank, qualityMeasureFactory).buildCrossword(); 
+	}
+	
+	/**
+	 * Writes the blank and solution PDFs, next to the clues-file. 
+	 */
+	static void writePdfs(Crossword crossword, CrosswordInput crosswordInput, File cluesFile) throws IOException { 
+		File crosswordDir = cluesFile.getParentFile(); 
+		String cluesBasename = Str.getFileBasename(cluesFile); 
+		new PdfCrossword(crossword, crosswordInput, new File(crosswordDir, cluesBasename+" blank.pdf"), false); 
+		new PdfCrossword(crossword, crosswordInput, new File(crosswordDir, cluesBasename+" soln.pdf"), true); 
+	}
+	
 	public static void printWordsWithHeading(String heading, Collection<String> words) { 
 		System.out.println();
 		System.out.println(heading);
@@ -225,7 +239,7 @@ public class PdfCrossword extends PdfDocument {
 
 		@Override
 		protected Block getCellBlock(int row, int column) { 
-			return new CellBlock(grid.rows[row][column]); 
+			return new CellBlock(grid.getCell(row, column)); 
 		}
 		
 		@Override
@@ -293,10 +307,10 @@ public class PdfCrossword extends PdfDocument {
 			
 			CellBlock(Cell cell) { 
 				this.cell = cell ; 
-				if ((wantSolution || !cell.isPuzzleCell) && cell.hasLetter()) { 
+				if ((wantSolution || !cell.isPuzzleCell()) && cell.hasLetter()) { 
 					letterBlock = new CellLetterBlock();
 				}
-				if (cell.wordNumber>0) { 
+				if (cell.getWordNumber()>0) { 
 					numberBlock = new CellNumberBlock();
 				}
 			}
@@ -340,11 +354,11 @@ public class PdfCrossword extends PdfDocument {
 			
 			class CellLetterBlock extends StringBlock {
 				public CellLetterBlock() {
-					super(String.valueOf(cell.ch));
+					super(String.valueOf(cell.getChar()));
 				} 
 				@Override
 				protected Quill inheritQuill(Quill receivedQuill) {
-					if (cell.isPuzzleCell) { 
+					if (cell.isPuzzleCell()) { 
 						return super.inheritQuill(receivedQuill);
 					} else { 
 						return super.inheritQuill(receivedQuill).copy(wantSolution?Color.LIGHT_GRAY:Color.DARK_GRAY); 
@@ -354,7 +368,7 @@ public class PdfCrossword extends PdfDocument {
 			
 			class CellNumberBlock extends StringBlock { 
 				public CellNumberBlock() {
-					super(String.valueOf(cell.wordNumber)); 
+					super(String.valueOf(cell.getWordNumber())); 
 				} 
 				@Override
 				protected Quill inheritQuill(Quill receivedQuill) { 
@@ -7,5 +7,6 @@
  * and also extracts some configuration (grid dimensions, font sizes, title, etc). 
  * <p>
  * Efficiency (October 2020): the code spends much time in the copy-constructor for {@link com.gingerdroids.crossword.Grid}. 
+ * The grid now keeps its cells in flat arrays, and {@link com.gingerdroids.crossword.Cell} is only a view onto them. 
  */
 package com.gingerdroids.crossword;
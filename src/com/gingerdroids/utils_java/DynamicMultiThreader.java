@@ -41,8 +41,9 @@ public abstract class DynamicMultiThreader {
 	
 	public DynamicMultiThreader(int itemCount, int threadCount) { 
 		this.itemCount = itemCount ; 
-		this.threads = new DynamicItemThread[itemCount] ; 
-		for (int i=0 ; i<itemCount ; i++) threads[i] = new DynamicItemThread(); 
+		int actualThreadCount = Math.min(Math.max(threadCount, 1), itemCount) ; // No point having more threads than items. 
+		this.threads = new DynamicItemThread[actualThreadCount] ; 
+		for (int i=0 ; i<actualThreadCount ; i++) threads[i] = new DynamicItemThread(); 
 	}
 
 	public DynamicMultiThreader(int itemCount) { 
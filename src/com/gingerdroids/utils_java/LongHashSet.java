@@ -0,0 +1,139 @@
+package com.gingerdroids.utils_java;
+
+import java.util.HashSet;
+import java.util.Random;
+import java.util.Set;
+
+/**
+ * A set of <code>long</code> values, without boxing them. 
+ * <p>
+ * Uses open addressing with linear probing in a power-of-two table, which doubles when it gets more than half full. 
+ * Values cannot be removed. 
+ * <p>
+ * Not thread-safe. 
+ */
+public class LongHashSet { 
+	
+	private static final int minCapacity = 16 ; 
+	
+	/**
+	 * The table. A slot holding zero is empty, unless it is the slot for zero itself - see {@link #hasZero}. 
+	 */
+	private long [] slots ; 
+	
+	private int mask ; 
+	
+	private int count ; 
+	
+	/**
+	 * Zero is the empty-slot marker, so whether zero is in the set is recorded separately. 
+	 */
+	private boolean hasZero = false ; 
+	
+	public LongHashSet() { 
+		this(minCapacity); 
+	}
+	
+	/**
+	 * @param expectedCount How many values are expected. The table is sized to hold this many without growing. 
+	 */
+	public LongHashSet(int expectedCount) { 
+		int capacity = minCapacity ; 
+		while (capacity<2*expectedCount) capacity *= 2 ; 
+		this.slots = new long[capacity] ; 
+		this.mask = capacity - 1 ; 
+	}
+	
+	/**
+	 * Adds the value. 
+	 * @return Whether the value was added - ie, <code>false</code> if it was already in the set. 
+	 */
+	public boolean add(long value) { 
+		if (value==0) { 
+			if (hasZero) return false ; 
+			hasZero = true ; 
+			count ++ ; 
+			return true ; 
+		}
+		int index = slotFor(value) ; 
+		while (slots[index]!=0) { 
+			if (slots[index]==value) return false ; 
+			index = (index+1) & mask ; 
+		}
+		slots[index] = value ; 
+		count ++ ; 
+		if (2*count>slots.length) grow(); 
+		return true ; 
+	}
+	
+	public boolean contains(long value) { 
+		if (value==0) return hasZero ; 
+		int index = slotFor(value) ; 
+		while (slots[index]!=0) { 
+			if (slots[index]==value) return true ; 
+			index = (index+1) & mask ; 
+		}
+		return false ; 
+	}
+	
+	public int size() { 
+		return count ; 
+	}
+	
+	private int slotFor(long value) { 
+		/* Values may be well-mixed hashes already, but don't rely on it. */
+		long mixed = value * 0x9E3779B97F4A7C15L ; 
+		return (int) (mixed >>> 40) & mask ; 
+	}
+	
+	private void grow() { 
+		long [] oldSlots = slots ; 
+		this.slots = new long[oldSlots.length*2] ; 
+		this.mask = slots.length - 1 ; 
+		for (long value : oldSlots) { 
+			if (value==0) continue ; 
+			int index = slotFor(value) ; 
+			while (slots[index]!=0) index = (index+1) & mask ; 
+			slots[index] = value ; 
+		}
+	}
+	
+	public static class ClassTest { 
+		
+		private final Random random = new Random(90872345987L); 
+		
+		public ClassTest() { 
+			testAgainstHashSet(0); 
+			testAgainstHashSet(1); 
+			testAgainstHashSet(100); 
+			testAgainstHashSet(10000); 
+			testZero(); 
+			//////  Passed! Bye bye.  
+			System.out.println("Passed test suite "+this.getClass().getCanonicalName()); 
+		}
+		
+		private void testAgainstHashSet(int valueCount) { 
+			LongHashSet longSet = new LongHashSet(); 
+			Set<Long> expectedSet = new HashSet<Long>(); 
+			for (int i=0 ; i<valueCount ; i++) { 
+				long value = random.nextInt(valueCount+1) ; // Plenty of repeats. 
+				boolean wasAdded = longSet.add(value); 
+				boolean expectedAdded = expectedSet.add(value); 
+				if (wasAdded!=expectedAdded) throw new RuntimeException("Adding "+value+" returned "+wasAdded); 
+			}
+			if (longSet.size()!=expectedSet.size()) throw new RuntimeException("Expected size "+expectedSet.size()+", actual size "+longSet.size()); 
+			for (long value=-1 ; value<=valueCount+1 ; value++) { 
+				if (longSet.contains(value)!=expectedSet.contains(value)) throw new RuntimeException("Wrong membership for "+value); 
+			}
+		}
+		
+		private void testZero() { 
+			LongHashSet longSet = new LongHashSet(); 
+			if (longSet.contains(0)) throw new RuntimeException("Empty set contains zero."); 
+			if (!longSet.add(0)) throw new RuntimeException("Could not add zero."); 
+			if (longSet.add(0)) throw new RuntimeException("Added zero twice."); 
+			if (!longSet.contains(0)) throw new RuntimeException("Zero went missing."); 
+		}
+	}
+
+}
@@ -0,0 +1,133 @@
+package com.gingerdroids.utils_java;
+
+/**
+ * Times small pieces of code, in the manner of JMH, without needing it. 
+ * <p>
+ * Each benchmark runs for some warm-up iterations (so the JIT compiler has done its work), which are thrown away,
+ * then for some measured iterations. Each iteration calls the body again and again for a fixed time. 
+ * The result is the mean time per operation over the measured iterations, and their standard deviation. 
+ * <p>
+ * The body returns something computed from its work, which is kept, so the compiler can't discard the work as unused. 
+ * <p>
+ * Unlike JMH, all the benchmarks run in the same JVM, one after another, so an earlier benchmark can affect how a later one is compiled. 
+ * Compare numbers from the same benchmark, run the same way. 
+ */
+public class MicroBenchmark { 
+
+	/**
+	 * The code being timed. 
+	 */
+	public interface Body { 
+		/**
+		 * Does the work, and returns something computed from it. 
+		 */
+		long run() throws Exception ; 
+	}
+
+	private final int warmupIterationCount ; 
+
+	private final int measuredIterationCount ; 
+
+	private final long iterationNanos ; 
+
+	/**
+	 * Accumulates what the bodies return. Volatile, so writing it can't be optimised away. 
+	 */
+	private volatile long sink ; 
+
+	/**
+	 * How long the last call of {@link #runIteration(int, Body)} took, which is a little over {@link #iterationNanos}. 
+	 */
+	private long lastIterationNanos ; 
+
+	public MicroBenchmark(int warmupIterationCount, int measuredIterationCount, long iterationMillis) { 
+		if (measuredIterationCount<1) throw new IllegalArgumentException("Need at least one measured iteration."); 
+		this.warmupIterationCount = warmupIterationCount ; 
+		this.measuredIterationCount = measuredIterationCount ; 
+		this.iterationNanos = iterationMillis * 1000000 ; 
+	}
+
+	/**
+	 * Runs the benchmark, and returns its result. 
+	 *
+	 * @param opsPerRun How many operations one call of the body does. Eg, a body which adds 100 items to a list should pass 100, to get the time per item. 
+	 */
+	public Result measure(String name, int opsPerRun, Body body) throws Exception { 
+		for (int i=0 ; i<warmupIterationCount ; i++) runIteration(opsPerRun, body); 
+		double [] nanosPerOps = new double[measuredIterationCount] ; 
+		long opCount = 0 ; 
+		for (int i=0 ; i<measuredIterationCount ; i++) { 
+			long runCount = runIteration(opsPerRun, body); 
+			nanosPerOps[i] = lastIterationNanos / (double) (runCount*opsPerRun) ; 
+			opCount += runCount*opsPerRun ; 
+		}
+		return new Result(name, nanosPerOps, opCount); 
+	}
+
+	/**
+	 * Calls the body until the iteration time is up, at least once. 
+	 *
+	 * @return How many times the body was called. 
+	 */
+	private long runIteration(int opsPerRun, Body body) throws Exception { 
+		long runCount = 0 ; 
+		long sum = 0 ; 
+		long startNanos = System.nanoTime(); 
+		long elapsedNanos ; 
+		do { 
+			sum += body.run(); 
+			runCount ++ ; 
+			elapsedNanos = System.nanoTime() - startNanos ; 
+		} while (elapsedNanos<iterationNanos); 
+		this.lastIterationNanos = elapsedNanos ; 
+		sink += sum ; 
+		return runCount ; 
+	}
+
+	/**
+	 * Heading for the lines of {@link Result#toString()}. 
+	 */
+	public static String getHeading() { 
+		return String.format("%-48s %6s %14s %12s %14s", "Benchmark", "Iters", "ns/op", "StdDev", "Ops"); 
+	}
+
+	public static class Result { 
+
+		public final String name ; 
+
+		/**
+		 * Mean over the measured iterations of the time per operation. 
+		 */
+		public final double nanosPerOp ; 
+
+		/**
+		 * Standard deviation over the measured iterations of the time per operation. Zero if there was only one iteration. 
+		 */
+		public final double stdDevNanosPerOp ; 
+
+		public final int iterationCount ; 
+
+		/**
+		 * How many operations were timed, over all the measured iterations. 
+		 */
+		public final long opCount ; 
+
+		Result(String name, double [] nanosPerOps, long opCount) { 
+			this.name = name ; 
+			this.iterationCount = nanosPerOps.length ; 
+			this.opCount = opCount ; 
+			double sum = 0 ; 
+			for (double nanos : nanosPerOps) sum += nanos ; 
+			this.nanosPerOp = sum / iterationCount ; 
+			double sumSquares = 0 ; 
+			for (double nanos : nanosPerOps) sumSquares += (nanos-nanosPerOp) * (nanos-nanosPerOp) ; 
+			this.stdDevNanosPerOp = (iterationCount>1) ? Math.sqrt(sumSquares/(iterationCount-1)) : 0 ; 
+		}
+
+		@Override
+		public String toString() { 
+			return String.format("%-48s %6d %14.1f %12.1f %14d", name, iterationCount, nanosPerOp, stdDevNanosPerOp, opCount); 
+		}
+	}
+
+}
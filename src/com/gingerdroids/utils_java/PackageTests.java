@@ -15,6 +15,7 @@ public class PackageTests {
 		new MediansDouble.ClassTest(); 
 		new ArcTangentDiscrete.ClassTest(); 
 		new TestBufferedWriter.ClassTest(); 
+		new LongHashSet.ClassTest(); 
 		/* Currently jun16, not many classes have unit tests. */
 		System.out.println("Passed package test suite     "+this.getClass().getPackage().getName()); 
 	}